@@ -0,0 +1,206 @@
+package playground.grpc;
+
+import io.grpc.ChannelCredentials;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCredentials;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.TlsChannelCredentials;
+import io.grpc.TlsServerCredentials;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput and latency distribution of Hello.SayHello over the
+ * in-process transport, Netty with plaintext, and Netty with mutual TLS,
+ * using both the blocking and the async stubs. Run with:
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=HelloBenchmark</pre>
+ *
+ * The server executor can be varied as well (VIRTUAL needs Java 21), e.g.
+ * -p executor=VIRTUAL via the JMH command line.
+ *
+ * Every benchmark method performs exactly one call, so the "sample" mode
+ * output gives per-call percentiles (p50, p99, p99.9, etc).
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class HelloBenchmark {
+
+    public enum Transport {
+        IN_PROCESS,
+        NETTY_PLAINTEXT,
+        NETTY_TLS
+    }
+
+    @Param({"IN_PROCESS", "NETTY_PLAINTEXT", "NETTY_TLS"})
+    public Transport transport;
+
+    // When enabled, the server runs behind BasicAuthServerInterceptor and
+    // the client sends credentials, as HelloServer and HelloClient do.
+    @Param({"false", "true"})
+    public boolean auth;
+
+    @Param({"CACHED", "FORK_JOIN", "DIRECT"})
+    public ServerExecutorType executor;
+
+    private Server server;
+
+    private ExecutorService serverExecutor;
+
+    private ManagedChannel channel;
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    private HelloGrpc.HelloStub asyncStub;
+
+    private final HelloRequest request = HelloRequest.newBuilder()
+            .setName("Ivan")
+            .build();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Not verbose: the per-call console output would cost more than the call.
+        ServerServiceDefinition service = auth
+                ? ServerInterceptors.intercept(new HelloServerImpl(false), new BasicAuthServerInterceptor())
+                : ServerInterceptors.intercept(new HelloServerImpl(false));
+
+        switch (transport) {
+            case IN_PROCESS:
+                String serverName = InProcessServerBuilder.generateName();
+                server = configureExecutor(InProcessServerBuilder.forName(serverName))
+                        .addService(service)
+                        .build().start();
+                channel = InProcessChannelBuilder.forName(serverName).build();
+                break;
+            case NETTY_PLAINTEXT:
+                server = startNettyServer(InsecureServerCredentials.create(), service);
+                channel = Grpc.newChannelBuilderForAddress("localhost", server.getPort(),
+                        InsecureChannelCredentials.create()).build();
+                break;
+            case NETTY_TLS:
+                server = startNettyServer(serverTlsCredentials(), service);
+                channel = Grpc.newChannelBuilderForAddress("localhost", server.getPort(),
+                        clientTlsCredentials()).build();
+                break;
+            default:
+                throw new IllegalStateException("Unknown transport: " + transport);
+        }
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+        asyncStub = HelloGrpc.newStub(channel);
+
+        if (auth) {
+            BasicAuthCallCredentials callCredentials = new BasicAuthCallCredentials(
+                    HelloServerOptions.DEFAULT_USERNAME,
+                    HelloServerOptions.DEFAULT_PASSWORD);
+            blockingStub = blockingStub.withCallCredentials(callCredentials);
+            asyncStub = asyncStub.withCallCredentials(callCredentials);
+        }
+
+        // Make sure the connection (and the TLS handshake) is out of the way
+        // before the measurement starts.
+        blockingStub.sayHello(request);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        if (serverExecutor != null) {
+            serverExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public HelloResponse blocking() {
+        return blockingStub
+                .withDeadlineAfter(1000, TimeUnit.MILLISECONDS)
+                .sayHello(request);
+    }
+
+    @Benchmark
+    public HelloResponse async() throws Exception {
+        CompletableFuture<HelloResponse> future = new CompletableFuture<>();
+
+        asyncStub
+                .withDeadlineAfter(1000, TimeUnit.MILLISECONDS)
+                .sayHello(request, new StreamObserver<HelloResponse>() {
+
+                    private HelloResponse response;
+
+                    @Override
+                    public void onNext(HelloResponse response) {
+                        this.response = response;
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        future.complete(response);
+                    }
+                });
+
+        return future.get();
+    }
+
+    private Server startNettyServer(ServerCredentials credentials, ServerServiceDefinition service) throws Exception {
+        // Port 0 gets us an ephemeral port, which we then discover via Server#getPort.
+        return configureExecutor(Grpc.newServerBuilderForPort(0, credentials))
+                .addService(service)
+                .build().start();
+    }
+
+    private ServerBuilder<?> configureExecutor(ServerBuilder<?> builder) {
+        if (executor == ServerExecutorType.DIRECT) {
+            return builder.directExecutor();
+        }
+
+        serverExecutor = ServerExecutors.create(executor, Runtime.getRuntime().availableProcessors());
+        if (serverExecutor != null) {
+            builder.executor(serverExecutor);
+        }
+        return builder;
+    }
+
+    private static ServerCredentials serverTlsCredentials() throws Exception {
+        return TlsServerCredentials.newBuilder()
+                .clientAuth(TlsServerCredentials.ClientAuth.REQUIRE)
+                .trustManager(HelloServer.class.getResourceAsStream("ca.pem"))
+                .keyManager(
+                        HelloServer.class.getResourceAsStream("localhost.pem"),
+                        HelloServer.class.getResourceAsStream("localhost.key.pem"))
+                .build();
+    }
+
+    private static ChannelCredentials clientTlsCredentials() throws Exception {
+        return TlsChannelCredentials.newBuilder()
+                .keyManager(
+                        HelloClient.class.getResourceAsStream("client.pem"),
+                        HelloClient.class.getResourceAsStream("client.key.pem"))
+                .trustManager(HelloClient.class.getResourceAsStream("ca.pem"))
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package playground.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.NettySslContextServerCredentials;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of establishing a new mutual TLS connection: each invocation
+ * opens a connection, makes one call, and closes the connection. Run with:
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=TlsHandshakeBenchmark</pre>
+ *
+ * With resumption, the client reuses its SslContext, and thus its session cache,
+ * so every handshake after the first resumes a session. Without, each invocation
+ * gets a new client context (created outside the measurement), which forces a full
+ * handshake. The provider applies to both sides.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TlsHandshakeBenchmark {
+
+    @Param({"JDK", "OPENSSL"})
+    public SslProvider provider;
+
+    @Param({"false", "true"})
+    public boolean resumption;
+
+    private Server server;
+
+    private SslContext clientContext;
+
+    private final HelloRequest request = HelloRequest.newBuilder()
+            .setName("Ivan")
+            .build();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SslContext serverContext = GrpcSslContexts.configure(SslContextBuilder.forServer(
+                                HelloServer.class.getResourceAsStream("localhost.pem"),
+                                HelloServer.class.getResourceAsStream("localhost.key.pem")),
+                        TlsContexts.resolveProvider(provider))
+                .trustManager(HelloServer.class.getResourceAsStream("ca.pem"))
+                .clientAuth(ClientAuth.REQUIRE)
+                .build();
+
+        server = NettyServerBuilder.forPort(0, NettySslContextServerCredentials.create(serverContext))
+                .directExecutor()
+                // Not verbose, so that console output doesn't add to the handshake time.
+                .addService(new HelloServerImpl(false))
+                .build().start();
+
+        clientContext = newClientContext();
+    }
+
+    // Runs before every invocation, but isn't included in the measurement.
+    @Setup(Level.Invocation)
+    public void newClientContextIfNoResumption() throws Exception {
+        if (!resumption) {
+            clientContext = newClientContext();
+        }
+    }
+
+    private SslContext newClientContext() throws Exception {
+        // Resolved like the server's, so that both sides fail, rather than differ, without OpenSSL.
+        return GrpcSslContexts.configure(SslContextBuilder.forClient(), TlsContexts.resolveProvider(provider))
+                .keyManager(
+                        HelloClient.class.getResourceAsStream("client.pem"),
+                        HelloClient.class.getResourceAsStream("client.key.pem"))
+                .trustManager(HelloClient.class.getResourceAsStream("ca.pem"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public HelloResponse connect() throws InterruptedException {
+        ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+                .sslContext(clientContext)
+                .build();
+        try {
+            return HelloGrpc.newBlockingStub(channel)
+                    .withDeadlineAfter(5, TimeUnit.SECONDS)
+                    .sayHello(request);
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
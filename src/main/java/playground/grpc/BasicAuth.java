@@ -1,6 +1,7 @@
 package playground.grpc;
 
 import io.grpc.Context;
+import io.grpc.Metadata;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
@@ -9,6 +10,9 @@ public class BasicAuth {
 
     public static final String AUTH_HEADER_NAME = "Authorization";
 
+    public static final Metadata.Key<String> AUTH_HEADER_KEY =
+            Metadata.Key.of(AUTH_HEADER_NAME, Metadata.ASCII_STRING_MARSHALLER);
+
     public static final String AUTH_TYPE_PREFIX = "Basic ";
 
     public static final Context.Key<String> AUTH_USERNAME_CTX_KEY = Context.key("AUTH_USERNAME");
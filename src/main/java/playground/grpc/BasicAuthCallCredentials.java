@@ -7,38 +7,25 @@ import java.util.concurrent.Executor;
 
 public class BasicAuthCallCredentials extends CallCredentials {
 
-    private final String username;
-
-    private final String password;
+    // The credentials never change, so we encode the header only once.
+    private final String header;
 
     public BasicAuthCallCredentials(String username, String password) {
-        this.username = username;
-        this.password = password;
+        this.header = BasicAuth.encodeAuthorizationHeader(username, password);
     }
 
     @Override
     public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
-        // Add the token to the call via the metadata.
+        // Add the token to the call via the metadata. A fresh Metadata
+        // instance is cheap (and avoids sharing a mutable object between
+        // calls); the expensive part, the encoding, has already been done.
 
         Metadata headers = new Metadata();
-        Metadata.Key<String> authKey = Metadata.Key.of(BasicAuth.AUTH_HEADER_NAME, Metadata.ASCII_STRING_MARSHALLER);
-        headers.put(authKey, BasicAuth.encodeAuthorizationHeader(username, password));
+        headers.put(BasicAuth.AUTH_HEADER_KEY, header);
         applier.apply(headers);
 
-        /*
-
         // This method shouldn't block. If the credentials are not readily available then the
-        // work should be delegated to the supplied executor, as in the example below.
-
-        executor.execute(() -> {
-            try {
-                // TODO Apply the headers here.
-            } catch (Throwable e) {
-                applier.fail(Status.UNAUTHENTICATED.withCause(e));
-            }
-        });
-
-        */
+        // work should be delegated to the supplied executor; see RefreshingCallCredentials.
     }
 
     @Override
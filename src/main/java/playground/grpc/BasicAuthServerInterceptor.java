@@ -1,19 +1,47 @@
 package playground.grpc;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.grpc.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
-
-import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import java.util.concurrent.TimeUnit;
 
 public class BasicAuthServerInterceptor implements ServerInterceptor {
 
     private static final ServerCall.Listener NOOP_LISTENER = new ServerCall.Listener() {
     };
 
+    public static final long DEFAULT_CACHE_SIZE = 10_000;
+
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5);
+
+    private final CredentialVerifier verifier;
+
+    // Maps raw header values to authenticated usernames. Clients send the same
+    // header on every call, so after the first call we can skip the decoding,
+    // parsing, and (potentially slow) verification. Only successful verifications
+    // are cached. The TTL bounds how long a revoked credential remains usable.
+    private final Cache<String, String> cache;
+
+    public BasicAuthServerInterceptor() {
+        this(CredentialVerifier.of(HelloServerOptions.DEFAULT_USERNAME, HelloServerOptions.DEFAULT_PASSWORD),
+                DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL);
+    }
+
+    public BasicAuthServerInterceptor(CredentialVerifier verifier, long cacheSize, Duration cacheTtl) {
+        this.verifier = verifier;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl.toNanos(), TimeUnit.NANOSECONDS)
+                .build();
+    }
+
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
-        String header = headers.get(Metadata.Key.of(BasicAuth.AUTH_HEADER_NAME, ASCII_STRING_MARSHALLER));
+        String header = headers.get(BasicAuth.AUTH_HEADER_KEY);
 
         if (header == null) {
             call.close(Status.UNAUTHENTICATED
@@ -22,12 +50,17 @@ public class BasicAuthServerInterceptor implements ServerInterceptor {
             return NOOP_LISTENER;
         }
 
-        String username = authenticateUser(header);
+        String username = cache.getIfPresent(header);
         if (username == null) {
-            call.close(Status.UNAUTHENTICATED
-                            .withDescription("Invalid authentication token"),
-                    headers);
-            return NOOP_LISTENER;
+            username = authenticateUser(header);
+            if (username == null) {
+                call.close(Status.UNAUTHENTICATED
+                                .withDescription("Invalid authentication token"),
+                        headers);
+                return NOOP_LISTENER;
+            }
+
+            cache.put(header, username);
         }
 
         Context ctx = Context.current().withValue(BasicAuth.AUTH_USERNAME_CTX_KEY, username);
@@ -36,31 +69,24 @@ public class BasicAuthServerInterceptor implements ServerInterceptor {
     }
 
     private String authenticateUser(String header) {
-        if (header == null) {
-            return null;
-        }
-
         if (!header.startsWith(BasicAuth.AUTH_TYPE_PREFIX)) {
             return null;
         }
 
         try {
             String encoded = header.substring(BasicAuth.AUTH_TYPE_PREFIX.length()).trim();
-            String decoded = new String(Base64.getDecoder().decode(encoded));
+            String decoded = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
 
-            String[] tokens = decoded.split(":");
-            if (tokens.length != 2) {
+            // Usernames can't contain colons, but passwords can (RFC 7617).
+            int colon = decoded.indexOf(':');
+            if (colon == -1) {
                 return null;
             }
 
-            String username = tokens[0];
-            String password = tokens[1];
-
-            if (!HelloServerOptions.DEFAULT_USERNAME.equals(username)) {
-                return null;
-            }
+            String username = decoded.substring(0, colon);
+            String password = decoded.substring(colon + 1);
 
-            if (!HelloServerOptions.DEFAULT_PASSWORD.equals(password)) {
+            if (!verifier.verify(username, password)) {
                 return null;
             }
 
@@ -0,0 +1,159 @@
+package playground.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * Spreads calls over several channels, each with its own HTTP/2 connection. A single
+ * connection is limited by the server's MAX_CONCURRENT_STREAMS setting (calls above
+ * the limit wait for a free stream), and its I/O is handled by one event loop thread
+ * on each side. With enough concurrency, either can become the bottleneck.
+ *
+ * The pool is itself a channel, which means that stubs are created as usual:
+ *
+ * <pre>
+ * ChannelPool pool = new ChannelPool(4, ChannelPool.Strategy.LEAST_LOADED, channelBuilder::build);
+ * HelloGrpc.HelloBlockingStub stub = HelloGrpc.newBlockingStub(pool);
+ * </pre>
+ *
+ * Unlike client-side load balancing, all connections go to the same target. (With
+ * a load balancing policy, each of the channels connects to all the backends.)
+ */
+public class ChannelPool extends ManagedChannel {
+
+    public enum Strategy {
+
+        // Each channel in turn.
+        ROUND_ROBIN,
+
+        // The channel with the fewest calls in flight.
+        LEAST_LOADED
+    }
+
+    private final List<ManagedChannel> channels;
+
+    private final Strategy strategy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Calls in flight per channel; maintained for both strategies.
+    private final AtomicIntegerArray inFlight;
+
+    /**
+     * @param factory creates the channels; ManagedChannelBuilder#build can be used, as it
+     *                creates a new channel (and thus a new connection) on every invocation
+     */
+    public ChannelPool(int size, Strategy strategy, Supplier<ManagedChannel> factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        }
+
+        this.channels = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            channels.add(factory.get());
+        }
+
+        this.strategy = strategy;
+        this.inFlight = new AtomicIntegerArray(size);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        int index = select();
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(channels.get(index).newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                inFlight.incrementAndGet(index);
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        inFlight.decrementAndGet(index);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private int select() {
+        int size = channels.size();
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return Math.floorMod(next.getAndIncrement(), size);
+        }
+
+        // Start at a random place, so that ties don't always go to the first channel.
+        int start = ThreadLocalRandom.current().nextInt(size);
+        int best = start;
+        for (int i = 1; i < size; i++) {
+            int index = (start + i) % size;
+            if (inFlight.get(index) < inFlight.get(best)) {
+                best = index;
+            }
+        }
+
+        return best;
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Returns the number of calls in flight on the given channel.
+     */
+    public int getInFlight(int index) {
+        return inFlight.get(index);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+        return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return channels.stream().allMatch(ManagedChannel::isShutdown);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return channels.stream().allMatch(ManagedChannel::isTerminated);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
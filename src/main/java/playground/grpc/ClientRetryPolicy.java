@@ -0,0 +1,17 @@
+package playground.grpc;
+
+/**
+ * How the client deals with failed and slow calls. See
+ * {@link ServiceConfigBuilder} for details.
+ */
+public enum ClientRetryPolicy {
+
+    // Every call is made exactly once.
+    NONE,
+
+    // Failed calls are retried with exponential backoff.
+    RETRY,
+
+    // Calls that don't complete within the hedging delay are sent again.
+    HEDGE
+}
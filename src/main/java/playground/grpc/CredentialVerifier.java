@@ -0,0 +1,31 @@
+package playground.grpc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Verifies a username and password pair. Implementations may be slow (e.g., when
+ * checking against a store of hashed passwords); BasicAuthServerInterceptor
+ * caches successful verifications so that the cost is paid once per credential
+ * rather than once per call.
+ */
+@FunctionalInterface
+public interface CredentialVerifier {
+
+    boolean verify(String username, String password);
+
+    /**
+     * Returns a verifier that accepts exactly one username and password pair.
+     * The comparison is done in constant time to avoid leaking, via timing, how
+     * much of the supplied value matched.
+     */
+    static CredentialVerifier of(String username, String password) {
+        byte[] expectedUsername = username.getBytes(StandardCharsets.UTF_8);
+        byte[] expectedPassword = password.getBytes(StandardCharsets.UTF_8);
+        return (u, p) -> {
+            // Use non-short-circuiting AND so that both comparisons always run.
+            return MessageDigest.isEqual(expectedUsername, u.getBytes(StandardCharsets.UTF_8))
+                    & MessageDigest.isEqual(expectedPassword, p.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
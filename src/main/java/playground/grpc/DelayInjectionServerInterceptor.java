@@ -0,0 +1,44 @@
+package playground.grpc;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Makes a random fraction of calls slow, to simulate a server that occasionally
+ * stalls (e.g., because of a GC pause or a noisy neighbour). Useful for seeing
+ * the effect of hedging and retries on tail latency. The delay holds the handler
+ * thread, as a real stall would.
+ */
+public class DelayInjectionServerInterceptor implements ServerInterceptor {
+
+    private final double probability;
+
+    private final long delayMillis;
+
+    public DelayInjectionServerInterceptor(double probability, long delayMillis) {
+        this.probability = probability;
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onHalfClose() {
+                if (ThreadLocalRandom.current().nextDouble() < probability) {
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.onHalfClose();
+            }
+        };
+    }
+}
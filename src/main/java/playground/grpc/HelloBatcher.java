@@ -0,0 +1,209 @@
+package playground.grpc;
+
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces individual sayHello calls into BatchSayHello calls. Each call returns a
+ * future straight away; the request waits until either the batch is full, or the
+ * oldest request in it has waited for the maximum delay, and then the whole batch
+ * goes out in one RPC. The results are then split back to the individual futures.
+ *
+ * This trades a little latency (at most the maximum delay) for far fewer RPCs, which
+ * pays off when callers make many small calls in quick succession. Each element fails
+ * independently, exactly as it would with SayHello; if the batch call itself fails,
+ * all its futures fail with the same error.
+ *
+ * <pre>
+ * try (HelloBatcher batcher = new HelloBatcher(stub, 100, Duration.ofMillis(5), Duration.ofSeconds(1))) {
+ *     CompletableFuture&lt;HelloResponse&gt; future = batcher.sayHello(request);
+ * }
+ * </pre>
+ */
+public class HelloBatcher implements AutoCloseable {
+
+    private static final class PendingCall {
+
+        private final HelloRequest request;
+
+        private final CompletableFuture<HelloResponse> future = new CompletableFuture<>();
+
+        private PendingCall(HelloRequest request) {
+            this.request = request;
+        }
+    }
+
+    private final HelloGrpc.HelloStub stub;
+
+    private final int maxBatchSize;
+
+    private final Duration maxDelay;
+
+    private final Duration deadline;
+
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this.
+    private List<PendingCall> batch = new ArrayList<>();
+
+    private ScheduledFuture<?> flushTimer;
+
+    private boolean closed;
+
+    /**
+     * @param deadline applies to each batch call, measured from when it's sent
+     */
+    public HelloBatcher(HelloGrpc.HelloStub stub, int maxBatchSize, Duration maxDelay, Duration deadline) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + maxBatchSize);
+        }
+
+        this.stub = stub;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.deadline = deadline;
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "hello-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+        // Most timers are cancelled, because batches tend to fill up first.
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    public CompletableFuture<HelloResponse> sayHello(HelloRequest request) {
+        PendingCall call = new PendingCall(request);
+        List<PendingCall> full = null;
+
+        synchronized (this) {
+            if (closed) {
+                call.future.completeExceptionally(new IllegalStateException("Batcher closed"));
+                return call.future;
+            }
+
+            batch.add(call);
+
+            if (batch.size() >= maxBatchSize) {
+                full = takeBatch();
+            } else if (batch.size() == 1) {
+                // The first call in a batch decides when it's sent.
+                List<PendingCall> scheduled = batch;
+                flushTimer = scheduler.schedule(() -> flush(scheduled), maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // Send outside the lock, so that other callers aren't held up.
+        if (full != null) {
+            send(full);
+        }
+
+        return call.future;
+    }
+
+    /**
+     * Sends the pending calls now, without waiting for the batch to fill up.
+     */
+    public void flush() {
+        List<PendingCall> pending;
+        synchronized (this) {
+            pending = batch.isEmpty() ? null : takeBatch();
+        }
+
+        if (pending != null) {
+            send(pending);
+        }
+    }
+
+    // Invoked by the timer. By then, the batch may have been sent already because
+    // it filled up, in which case there's nothing to do.
+    private void flush(List<PendingCall> scheduled) {
+        List<PendingCall> pending = null;
+        synchronized (this) {
+            if (batch == scheduled) {
+                pending = takeBatch();
+            }
+        }
+
+        if (pending != null) {
+            send(pending);
+        }
+    }
+
+    // Must be called with the lock held.
+    private List<PendingCall> takeBatch() {
+        List<PendingCall> taken = batch;
+        batch = new ArrayList<>(Math.min(maxBatchSize, 1024));
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        return taken;
+    }
+
+    private void send(List<PendingCall> calls) {
+        BatchHelloRequest.Builder request = BatchHelloRequest.newBuilder();
+        for (PendingCall call : calls) {
+            request.addRequests(call.request);
+        }
+
+        stub.withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS)
+                .batchSayHello(request.build(), new StreamObserver<>() {
+                    @Override
+                    public void onNext(BatchHelloResponse response) {
+                        if (response.getResultsCount() != calls.size()) {
+                            IllegalStateException e = new IllegalStateException("Expected "
+                                    + calls.size() + " results, got " + response.getResultsCount());
+                            calls.forEach(call -> call.future.completeExceptionally(e));
+                            return;
+                        }
+
+                        for (int i = 0; i < calls.size(); i++) {
+                            HelloResult result = response.getResults(i);
+                            CompletableFuture<HelloResponse> future = calls.get(i).future;
+                            if (result.hasError()) {
+                                future.completeExceptionally(StatusProto.toStatusRuntimeException(result.getError()));
+                            } else {
+                                future.complete(result.getResponse());
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        calls.forEach(call -> call.future.completeExceptionally(t));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        // Futures already completed in onNext are unaffected; this
+                        // only catches a server that didn't send a response at all.
+                        IllegalStateException e = new IllegalStateException("No response");
+                        calls.forEach(call -> call.future.completeExceptionally(e));
+                    }
+                });
+    }
+
+    /**
+     * Sends the pending calls and stops accepting new ones.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+
+        flush();
+        scheduler.shutdown();
+    }
+}
@@ -3,11 +3,19 @@ package playground.grpc;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.rpc.BadRequest;
+import io.grpc.ChannelCredentials;
 import io.grpc.Grpc;
 import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import io.grpc.TlsChannelCredentials;
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettySslContextChannelCredentials;
 import io.grpc.stub.StreamObserver;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.baggage.Baggage;
 import io.opentelemetry.api.baggage.propagation.W3CBaggagePropagator;
@@ -18,10 +26,22 @@ import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.context.propagation.TextMapPropagator;
 import io.opentelemetry.instrumentation.grpc.v1_6.GrpcTelemetry;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
-
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import playground.grpc.compression.Compression;
+import playground.grpc.metrics.MetricsClientInterceptor;
+import playground.grpc.metrics.RpcMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class HelloClient {
 
@@ -32,22 +52,71 @@ public class HelloClient {
     private final HelloGrpc.HelloStub asyncStub;
 
     public HelloClient(String host, int port) throws Exception {
-        // Configure TLS using mutual authentication. To authenticate
-        // the server we install a custom trust manager that uses a
-        // private CA. To authenticate to the server, we use a client certificate.
-
-        TlsChannelCredentials.Builder tlsBuilder = TlsChannelCredentials.newBuilder();
-        tlsBuilder.keyManager(
-                HelloClient.class.getResourceAsStream("client.pem"),
-                HelloClient.class.getResourceAsStream("client.key.pem"));
-        tlsBuilder.trustManager(HelloClient.class.getResourceAsStream("ca.pem"));
-
-        this.channel = Grpc.newChannelBuilderForAddress(host, port, tlsBuilder.build())
-                // The server certificate is valid for 'localhost' and so that's fine
-                // but in a development environment it something might be useful to
-                // relax server hostname validation as in the example below.
-                //.overrideAuthority("example.com")
-                .build();
+        this(host, port, null);
+    }
+
+    /**
+     * @param serviceConfig default service config, e.g., with retry or hedging
+     *                      policies (see ServiceConfigBuilder); may be null
+     */
+    public HelloClient(String host, int port, Map<String, ?> serviceConfig) throws Exception {
+        this(Grpc.newChannelBuilderForAddress(host, port, credentials()), serviceConfig,
+                1, ChannelPool.Strategy.ROUND_ROBIN);
+    }
+
+    /**
+     * Connects to multiple servers, e.g., static:///localhost:50051,localhost:50052 or
+     * file:///path/to/backends.txt (see the loadbalancing package), and spreads the calls
+     * across them using the supplied policy: pick_first, round_robin, or
+     * least_outstanding_requests.
+     */
+    public HelloClient(String target, String loadBalancingPolicy, Map<String, ?> serviceConfig) throws Exception {
+        this(Grpc.newChannelBuilder(target, credentials())
+                .defaultLoadBalancingPolicy(loadBalancingPolicy), serviceConfig,
+                1, ChannelPool.Strategy.ROUND_ROBIN);
+    }
+
+    /**
+     * Configures everything from the command line options, including the channel pool.
+     */
+    public HelloClient(HelloClientOptions opts) throws Exception {
+        this(channelBuilder(opts), serviceConfig(opts), opts.getChannels(), opts.getChannelPoolStrategy());
+    }
+
+    // We need the Netty builder for the transport settings; the generic one doesn't have them all.
+    private static ManagedChannelBuilder<?> channelBuilder(HelloClientOptions opts) throws Exception {
+        NettyChannelBuilder builder;
+        if (opts.getTarget() != null) {
+            builder = NettyChannelBuilder.forTarget(opts.getTarget(), credentials(opts.getTlsProvider()))
+                    .defaultLoadBalancingPolicy(opts.getLbPolicy());
+        } else {
+            builder = NettyChannelBuilder.forAddress(opts.getHost(), opts.getPort(), credentials(opts.getTlsProvider()));
+        }
+        return opts.getTransportProfile().configure(builder);
+    }
+
+    private HelloClient(ManagedChannelBuilder<?> channelBuilder, Map<String, ?> serviceConfig,
+                        int channels, ChannelPool.Strategy poolStrategy) throws Exception {
+        // The server certificate is valid for 'localhost' and so that's fine
+        // but in a development environment it something might be useful to
+        // relax server hostname validation as in the example below.
+        //channelBuilder.overrideAuthority("example.com");
+
+        // Advertise support for deflate, in addition to gzip.
+        channelBuilder.decompressorRegistry(Compression.decompressorRegistry());
+
+        if (serviceConfig != null) {
+            // The service config from the name resolver takes precedence, but
+            // there isn't one with the default DNS resolver. Retries are enabled
+            // by default, but we're explicit because the policies depend on it.
+            channelBuilder.defaultServiceConfig(serviceConfig).enableRetry();
+        }
+
+        // With more than one channel, each has its own connection. The stubs don't
+        // know the difference, as the pool is a channel too.
+        this.channel = channels > 1
+                ? new ChannelPool(channels, poolStrategy, channelBuilder::build)
+                : channelBuilder.build();
 
         BasicAuthCallCredentials callCredentials = new BasicAuthCallCredentials(
                 HelloServerOptions.DEFAULT_USERNAME,
@@ -59,14 +128,19 @@ public class HelloClient {
 
         GrpcTelemetry grpcTelemetry = GrpcTelemetry.create(GlobalOpenTelemetry.get());
 
+        // Metrics are recorded only if a MeterProvider is registered, which
+        // the main method does when asked to; otherwise the meter is a no-op.
+        MetricsClientInterceptor metricsInterceptor = new MetricsClientInterceptor(GlobalOpenTelemetry.get());
+
         this.blockingStub = HelloGrpc.newBlockingStub(channel)
                 .withCallCredentials(callCredentials)
                 .withDeadlineAfter(1000, TimeUnit.MILLISECONDS)
-                .withInterceptors(grpcTelemetry.newClientInterceptor());
+                .withInterceptors(grpcTelemetry.newClientInterceptor(), metricsInterceptor);
 
         this.asyncStub = HelloGrpc.newStub(channel)
                 .withCallCredentials(callCredentials)
-                .withDeadlineAfter(1000, TimeUnit.MILLISECONDS);
+                .withDeadlineAfter(1000, TimeUnit.MILLISECONDS)
+                .withInterceptors(metricsInterceptor);
     }
 
     public HelloClient(ManagedChannel channel) throws Exception {
@@ -77,6 +151,27 @@ public class HelloClient {
                 .withDeadlineAfter(1000, TimeUnit.MILLISECONDS);
     }
 
+    private static ChannelCredentials credentials() throws Exception {
+        return credentials(SslProvider.JDK);
+    }
+
+    // Configure TLS using mutual authentication. To authenticate
+    // the server we install a custom trust manager that uses a
+    // private CA. To authenticate to the server, we use a client certificate.
+    //
+    // The TLS session cache belongs to the SslContext, which means that all
+    // the connections of a channel (or of a ChannelPool) can resume sessions.
+    private static ChannelCredentials credentials(SslProvider provider) throws Exception {
+        SslContext sslContext = GrpcSslContexts.configure(SslContextBuilder.forClient(),
+                        TlsContexts.resolveProvider(provider))
+                .keyManager(
+                        HelloClient.class.getResourceAsStream("client.pem"),
+                        HelloClient.class.getResourceAsStream("client.key.pem"))
+                .trustManager(HelloClient.class.getResourceAsStream("ca.pem"))
+                .build();
+        return NettySslContextChannelCredentials.create(sslContext);
+    }
+
     // Example of a blocking invocation and a successful response.
     private void successfulBlockingRequest() {
         try {
@@ -168,6 +263,34 @@ public class HelloClient {
         }
     }
 
+    /**
+     * Returns a batcher that combines individual sayHello calls into BatchSayHello
+     * calls; see HelloBatcher. Close it when done.
+     */
+    public HelloBatcher newBatcher(int maxBatchSize, Duration maxDelay) {
+        return new HelloBatcher(asyncStub, maxBatchSize, maxDelay, Duration.ofMillis(1000));
+    }
+
+    // Many small calls in a tight loop, sent as a handful of batches.
+    private void batchedAsyncRequests() {
+        List<CompletableFuture<HelloResponse>> futures = new ArrayList<>();
+        try (HelloBatcher batcher = newBatcher(100, Duration.ofMillis(5))) {
+            for (int i = 0; i < 1000; i++) {
+                futures.add(batcher.sayHello(HelloRequest.newBuilder()
+                        .setName("Ivan " + i)
+                        .build()));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            System.out.println("Request #5: Success: " + futures.size() + " batched calls, last: "
+                    + futures.get(futures.size() - 1).get().getGreeting());
+        } catch (Exception e) {
+            System.out.println("Request #5: Error: " + e.getMessage());
+        }
+    }
+
     // This call fails because of a short deadline.
     private void failedDeadlineExceeded() {
 
@@ -194,6 +317,26 @@ public class HelloClient {
     }
 
     public static void main(String[] args) throws Exception {
+        HelloClientOptions opts = new HelloClientOptions();
+        CmdLineParser parser = new CmdLineParser(opts);
+
+        try {
+            parser.parseArgument(args);
+
+            // Otherwise, a typo would surface later as a stack trace.
+            try {
+                retryableCodes(opts);
+            } catch (IllegalArgumentException e) {
+                throw new CmdLineException(parser, "Unknown status code in --retryable-codes: " + opts.getRetryableCodes());
+            }
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            System.err.println("HelloClient [options...] arguments...");
+            parser.printUsage(System.err);
+            System.err.println();
+            return;
+        }
+
         SdkTracerProvider sdkTracerProvider = SdkTracerProvider.builder()
                 /* Should you want to export the collected spans, uncomment this bit.
                 .addSpanProcessor(BatchSpanProcessor.builder(OtlpGrpcSpanExporter.builder().build())
@@ -202,15 +345,33 @@ public class HelloClient {
                         .build())*/
                 .build();
 
+        SdkMeterProvider sdkMeterProvider = opts.getMetricsInterval() > 0
+                ? RpcMetrics.loggingMeterProvider(Duration.ofSeconds(opts.getMetricsInterval()))
+                : SdkMeterProvider.builder().build();
+
         OpenTelemetrySdk.builder()
                 .setTracerProvider(sdkTracerProvider)
+                .setMeterProvider(sdkMeterProvider)
                 .setPropagators(ContextPropagators.create(TextMapPropagator.composite(
                         W3CBaggagePropagator.getInstance(),
                         W3CTraceContextPropagator.getInstance()
                 )))
                 .buildAndRegisterGlobal();
 
-        HelloClient client = new HelloClient("localhost", HelloServerOptions.DEFAULT_SERVER_PORT);
+        HelloClient client = new HelloClient(opts);
+
+        if (opts.isLoad()) {
+            HelloGrpc.HelloStub stub = opts.isZeroCopy()
+                    ? client.asyncStub.withInterceptors(ZeroCopyMarshallers.clientInterceptor())
+                    : client.asyncStub;
+            try {
+                new HelloLoadGenerator(stub, opts).run();
+            } finally {
+                client.channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+                sdkMeterProvider.close();
+            }
+            return;
+        }
 
         Span span = GlobalOpenTelemetry.getTracer("my tracer")
                 .spanBuilder("my span")
@@ -230,6 +391,43 @@ public class HelloClient {
 
         client.failedDeadlineExceeded();
 
+        client.batchedAsyncRequests();
+
         // TODO Example with a future stub.
     }
+
+    // Note that the deadline applies to the call as a whole, and not to the
+    // individual attempts. With hedging, it needs to leave room for all of them.
+    static Map<String, Object> serviceConfig(HelloClientOptions opts) {
+        if (opts.getRetryPolicy() == ClientRetryPolicy.NONE) {
+            return null;
+        }
+
+        List<Status.Code> codes = retryableCodes(opts);
+
+        ServiceConfigBuilder builder = new ServiceConfigBuilder();
+        if (opts.getRetryPolicy() == ClientRetryPolicy.HEDGE) {
+            System.out.println("Hedging SayHello after " + opts.getHedgingDelay() + " ms, up to "
+                    + opts.getMaxAttempts() + " attempts");
+            builder.hedge(HelloGrpc.getSayHelloMethod(), opts.getMaxAttempts(),
+                    Duration.ofMillis(opts.getHedgingDelay()), codes);
+        } else {
+            System.out.println("Retrying SayHello on " + codes + ", up to " + opts.getMaxAttempts() + " attempts");
+            builder.retry(HelloGrpc.getSayHelloMethod(), opts.getMaxAttempts(),
+                    Duration.ofMillis(100), Duration.ofSeconds(1), 2, codes);
+        }
+
+        // Stop sending extra attempts once failures use up half the tokens;
+        // each successful call earns back a tenth of a token.
+        return builder.throttle(10, 0.1).build();
+    }
+
+    // Throws IllegalArgumentException for names that aren't status codes.
+    static List<Status.Code> retryableCodes(HelloClientOptions opts) {
+        return Arrays.stream(opts.getRetryableCodes().split(","))
+                .map(String::trim)
+                .filter(code -> !code.isEmpty())
+                .map(Status.Code::valueOf)
+                .collect(Collectors.toList());
+    }
 }
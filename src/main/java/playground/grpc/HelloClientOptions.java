@@ -0,0 +1,90 @@
+package playground.grpc;
+
+import io.netty.handler.ssl.SslProvider;
+import lombok.Data;
+import org.kohsuke.args4j.Option;
+
+@Data
+public class HelloClientOptions {
+
+    @Option(name = "--host")
+    String host = "localhost";
+
+    @Option(name = "--port")
+    int port = HelloServerOptions.DEFAULT_SERVER_PORT;
+
+    @Option(name = "--tls-provider", usage = "TLS implementation: JDK or OPENSSL")
+    SslProvider tlsProvider = SslProvider.JDK;
+
+    // Should match the server's --transport-profile.
+    @Option(name = "--transport-profile", usage = "DEFAULT, LOW_LATENCY, or HIGH_THROUGHPUT")
+    TransportProfile transportProfile = TransportProfile.DEFAULT;
+
+    // Multiple servers, e.g., static:///localhost:50051,localhost:50052
+    // or file:///path/to/backends.txt. Takes precedence over host and port.
+    @Option(name = "--target")
+    String target;
+
+    @Option(name = "--lb-policy", usage = "pick_first, round_robin, or least_outstanding_requests")
+    String lbPolicy = "pick_first";
+
+    // Each channel has its own connection; see ChannelPool.
+    @Option(name = "--channels", usage = "Number of channels (connections) to use")
+    int channels = 1;
+
+    @Option(name = "--channel-pool-strategy", usage = "ROUND_ROBIN or LEAST_LOADED")
+    ChannelPool.Strategy channelPoolStrategy = ChannelPool.Strategy.ROUND_ROBIN;
+
+    // Zero disables metrics.
+    @Option(name = "--metrics-interval", usage = "How often to log RPC metrics, in seconds")
+    int metricsInterval = 0;
+
+    @Option(name = "--zero-copy", usage = "Use zero-copy protobuf marshallers")
+    boolean zeroCopy;
+
+    // Load generation; without this option the client makes a few demo calls.
+
+    @Option(name = "--load", usage = "Run the load generator instead of the demo calls")
+    boolean load;
+
+    // In closed-loop mode, the number of calls in flight. In open-loop
+    // mode, the maximum number of calls in flight.
+    @Option(name = "--concurrency")
+    int concurrency = 16;
+
+    // Calls per second. Zero means closed-loop mode, in which each
+    // worker issues its next call as soon as the previous one completes.
+    @Option(name = "--rate")
+    int rate = 0;
+
+    @Option(name = "--duration", usage = "Measurement duration, in seconds")
+    int duration = 30;
+
+    @Option(name = "--warmup", usage = "Warm-up duration, in seconds")
+    int warmup = 5;
+
+    // Length of the name sent in each request.
+    @Option(name = "--payload-size")
+    int payloadSize = 16;
+
+    @Option(name = "--deadline", usage = "Per-call deadline, in milliseconds")
+    int deadline = 1000;
+
+    // Retries and hedging apply to SayHello. Both are limited by retry
+    // throttling, so that a failing server doesn't get even more traffic.
+
+    @Option(name = "--retry-policy", usage = "NONE, RETRY, or HEDGE")
+    ClientRetryPolicy retryPolicy = ClientRetryPolicy.NONE;
+
+    // Includes the original attempt. gRPC caps this at 5.
+    @Option(name = "--max-attempts")
+    int maxAttempts = 3;
+
+    // Hedging: how long to wait for a response before sending another attempt.
+    @Option(name = "--hedging-delay", usage = "Hedging delay, in milliseconds")
+    int hedgingDelay = 50;
+
+    // Retry: statuses that are retried. Hedging: statuses that don't stop other attempts.
+    @Option(name = "--retryable-codes", usage = "Comma-separated status codes, e.g., UNAVAILABLE,RESOURCE_EXHAUSTED")
+    String retryableCodes = "UNAVAILABLE";
+}
@@ -0,0 +1,163 @@
+package playground.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates load against the Hello service using the async stub, and reports
+ * throughput and the latency distribution. There are two modes:
+ *
+ * <ul>
+ *     <li>Closed loop (--rate 0): a fixed number of workers, each issuing its next call
+ *     as soon as the previous one completes. This measures maximum throughput, but
+ *     the latencies are optimistic: when the server stalls, the workers stop sending,
+ *     and the calls that would have been delayed are never made (this is known as
+ *     coordinated omission).</li>
+ *     <li>Open loop (--rate N): calls are issued on a fixed schedule, regardless of
+ *     how quickly the server responds. Latency is measured from the time each call
+ *     was supposed to start, which means that any delays (including waiting for one
+ *     of the --concurrency slots) are included. Use this mode for latency numbers.</li>
+ * </ul>
+ *
+ * Calls made during the warm-up period are not recorded.
+ */
+public class HelloLoadGenerator {
+
+    private final HelloGrpc.HelloStub stub;
+
+    private final HelloClientOptions opts;
+
+    private final HelloRequest request;
+
+    // Latency in microseconds. Recorder is designed for concurrent
+    // recording, with minimal overhead on the recording threads.
+    private final Recorder recorder = new Recorder(3);
+
+    private final LongAdder successes = new LongAdder();
+
+    private final Map<Status.Code, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private long measureStart;
+
+    private long end;
+
+    public HelloLoadGenerator(HelloGrpc.HelloStub stub, HelloClientOptions opts) {
+        this.stub = stub;
+        this.opts = opts;
+        this.request = HelloRequest.newBuilder()
+                .setName("x".repeat(Math.max(opts.getPayloadSize(), 1)))
+                .build();
+    }
+
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        measureStart = start + TimeUnit.SECONDS.toNanos(opts.getWarmup());
+        end = measureStart + TimeUnit.SECONDS.toNanos(opts.getDuration());
+
+        System.out.println("Warming up for " + opts.getWarmup() + "s, then measuring for " + opts.getDuration() + "s ("
+                + (opts.getRate() > 0 ? "open loop, " + opts.getRate() + " calls/s" : "closed loop")
+                + ", concurrency " + opts.getConcurrency() + ")");
+
+        if (opts.getRate() > 0) {
+            runOpenLoop(start);
+        } else {
+            runClosedLoop();
+        }
+
+        report();
+    }
+
+    private void runClosedLoop() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(opts.getConcurrency());
+        for (int i = 0; i < opts.getConcurrency(); i++) {
+            closedLoopCall(done);
+        }
+        done.await();
+    }
+
+    private void closedLoopCall(CountDownLatch done) {
+        call(System.nanoTime(), () -> {
+            if (System.nanoTime() < end) {
+                closedLoopCall(done);
+            } else {
+                done.countDown();
+            }
+        });
+    }
+
+    private void runOpenLoop(long start) throws InterruptedException {
+        Semaphore slots = new Semaphore(opts.getConcurrency());
+        long interval = TimeUnit.SECONDS.toNanos(1) / opts.getRate();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+
+            // Wait until it's time for the call. If we're behind schedule,
+            // we don't wait and the latency includes the delay.
+            long delay;
+            while ((delay = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            slots.acquire();
+            call(intended, slots::release);
+        }
+
+        // Wait for the calls in flight to complete.
+        slots.acquire(opts.getConcurrency());
+    }
+
+    private void call(long intended, Runnable next) {
+        stub.withDeadlineAfter(opts.getDeadline(), TimeUnit.MILLISECONDS)
+                .sayHello(request, new StreamObserver<HelloResponse>() {
+                    @Override
+                    public void onNext(HelloResponse response) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        if (intended >= measureStart) {
+                            errors.computeIfAbsent(Status.fromThrowable(t).getCode(), c -> new LongAdder()).increment();
+                        }
+                        next.run();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        if (intended >= measureStart) {
+                            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                            successes.increment();
+                        }
+                        next.run();
+                    }
+                });
+    }
+
+    private void report() {
+        Histogram histogram = recorder.getIntervalHistogram();
+
+        System.out.println();
+        System.out.printf("Throughput: %.1f calls/s%n", successes.sum() / (double) opts.getDuration());
+        System.out.println("Successful calls: " + successes.sum());
+        errors.forEach((code, count) -> System.out.println("Failed calls (" + code + "): " + count.sum()));
+        System.out.println();
+        System.out.println("Latency (ms):");
+        System.out.printf("  p50:   %.3f%n", histogram.getValueAtPercentile(50) / 1000.0);
+        System.out.printf("  p99:   %.3f%n", histogram.getValueAtPercentile(99) / 1000.0);
+        System.out.printf("  p99.9: %.3f%n", histogram.getValueAtPercentile(99.9) / 1000.0);
+        System.out.printf("  max:   %.3f%n", histogram.getMaxValue() / 1000.0);
+    }
+}
@@ -1,66 +1,194 @@
 package playground.grpc;
 
-import io.grpc.Grpc;
+import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.Server;
+import io.grpc.ServerInterceptor;
 import io.grpc.ServerInterceptors;
-import io.grpc.TlsServerCredentials;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.NettySslContextServerCredentials;
+import io.grpc.util.AdvancedTlsX509KeyManager;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
+import playground.grpc.compression.AdaptiveCompressionServerInterceptor;
+import playground.grpc.compression.Compression;
+import playground.grpc.compression.CompressionPolicy;
+import playground.grpc.limits.ConcurrencyLimitServerInterceptor;
+import playground.grpc.limits.GradientConcurrencyLimit;
+import playground.grpc.metrics.MetricsServerInterceptor;
+import playground.grpc.metrics.RpcMetrics;
+import playground.grpc.scheduling.DeadlineAdmissionServerInterceptor;
+import playground.grpc.scheduling.EarliestDeadlineFirstExecutor;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class HelloServer {
     
     private Server server;
 
-    private void start(String[] args) throws IOException {
+    private ExecutorService executor;
+
+    private NettyTransports transports;
+
+    private SdkMeterProvider meterProvider;
+
+    private final Compression compression = new Compression();
+
+    private ScheduledExecutorService tlsReloadScheduler;
+
+    private Closeable certificateReloader;
+
+    private ConcurrencyLimitServerInterceptor concurrencyLimiter;
+
+    private DeadlineAdmissionServerInterceptor deadlineAdmission;
+
+    private EarliestDeadlineFirstExecutor deadlineExecutor;
+
+    private void start(String[] args) throws IOException, GeneralSecurityException {
         HelloServerOptions opts = new HelloServerOptions();
         CmdLineParser parser = new CmdLineParser(opts);
 
         try {
             parser.parseArgument(args);
+
+            // Otherwise, the interceptor would ask for a compressor that gRPC can't find,
+            // and every response over the threshold would fail.
+            if ((opts.getCompression() != null)
+                    && (compression.getCompressorRegistry().lookupCompressor(opts.getCompression()) == null)) {
+                throw new CmdLineException(parser, "Unknown compression: " + opts.getCompression());
+            }
+
+            // The cache converts the service to use byte arrays as messages, which
+            // replaces the zero-copy marshallers, and so one would undo the other.
+            if (opts.isZeroCopy() && (opts.getResponseCacheSize() > 0)) {
+                throw new CmdLineException(parser, "--zero-copy can't be combined with --response-cache-size");
+            }
         } catch (CmdLineException e) {
             System.err.println(e.getMessage());
             System.err.println("HelloServer [options...] arguments...");
             parser.printUsage(System.err);
             System.err.println();
+            return;
         }
 
         System.out.println("Starting server...");
 
-        TlsServerCredentials.Builder tlsBuilder = TlsServerCredentials.newBuilder();
+        SslContext sslContext = buildSslContext(opts);
 
-        tlsBuilder.clientAuth(TlsServerCredentials.ClientAuth.REQUIRE);
+        // We use the Netty builder directly, rather than Grpc#newServerBuilderForPort,
+        // so that we can control the transport and the event loops.
+        transports = NettyTransports.create(opts.getTransport(), opts.getBossThreads(), opts.getWorkerThreads());
+        System.out.println("Using transport: " + transports.getType());
 
-        if (opts.getCaCert() != null) {
-            tlsBuilder.trustManager(new File(opts.getCaCert()));
-        } else {
-            tlsBuilder.trustManager(this.getClass().getResourceAsStream("ca.pem"));
+        // Interceptors run in reverse order, which means that the last one
+        // sees the call first. Metrics go last so that they include everything.
+        List<ServerInterceptor> interceptors = new ArrayList<>();
+        interceptors.add(new BasicAuthServerInterceptor());
+
+        if (opts.getInjectDelayProbability() > 0) {
+            System.out.println("Delaying " + (opts.getInjectDelayProbability() * 100) + "% of calls by "
+                    + opts.getInjectDelay() + " ms");
+            interceptors.add(new DelayInjectionServerInterceptor(
+                    opts.getInjectDelayProbability(), opts.getInjectDelay()));
         }
 
-        if ((opts.getTlsCerts() != null) && (opts.getTlsKey() != null)) {
-            System.out.println("Using TLS with the supplied certificate");
-            tlsBuilder.keyManager(
-                    new File(opts.getTlsCerts()),
-                    new File(opts.getTlsKey()));
-        } else {
-            System.out.println("Using TLS with a self-signed certificate");
-            tlsBuilder.keyManager(
-                    this.getClass().getResourceAsStream("localhost.pem"),
-                    this.getClass().getResourceAsStream("localhost.key.pem"));
+        // The limiter sees the calls before the interceptors above, which means
+        // that it rejects calls before authentication, and that the injected
+        // delays count towards the latency it observes.
+        if (opts.isConcurrencyLimit()) {
+            System.out.println("Limiting concurrency, starting at " + opts.getInitialConcurrencyLimit()
+                    + " calls, up to " + opts.getMaxConcurrencyLimit());
+            concurrencyLimiter = new ConcurrencyLimitServerInterceptor(
+                    new GradientConcurrencyLimit(opts.getInitialConcurrencyLimit(), 1, opts.getMaxConcurrencyLimit()),
+                    Duration.ofMillis(100));
+            interceptors.add(concurrencyLimiter);
+        }
+
+        if (opts.isDeadlineScheduling()) {
+            System.out.println("Using deadline-aware admission and scheduling");
+            deadlineAdmission = new DeadlineAdmissionServerInterceptor();
+            deadlineExecutor = new EarliestDeadlineFirstExecutor(opts.getExecutorThreads());
+            interceptors.add(deadlineAdmission);
+        }
+
+        if (opts.getCompression() != null) {
+            System.out.println("Compressing responses of " + opts.getCompressionThreshold()
+                    + " bytes or more with " + opts.getCompression());
+            interceptors.add(new AdaptiveCompressionServerInterceptor(new CompressionPolicy(
+                    new CompressionPolicy.Rule(opts.getCompression(), opts.getCompressionThreshold()))));
+        }
+
+        if (opts.getMetricsInterval() > 0) {
+            System.out.println("Logging metrics every " + opts.getMetricsInterval() + "s");
+            meterProvider = RpcMetrics.loggingMeterProvider(Duration.ofSeconds(opts.getMetricsInterval()));
+            interceptors.add(new MetricsServerInterceptor(OpenTelemetrySdk.builder()
+                    .setMeterProvider(meterProvider)
+                    .build()));
+        }
+
+        // SayHello responses depend only on the request, so they can be cached, apart
+        // from the slow ones (see HelloServerImpl#isCacheable). The cache sits inside the
+        // interceptors, which means that authentication still applies to every call.
+        ServerServiceDefinition service = new HelloServerImpl(opts.isVerbose()).bindService();
+        if (opts.isZeroCopy()) {
+            System.out.println("Using zero-copy marshallers");
+            service = ZeroCopyMarshallers.convert(service);
+        }
+        if (opts.getResponseCacheSize() > 0) {
+            System.out.println("Using response cache of " + opts.getResponseCacheSize() + " bytes");
+            service = new ResponseCache(opts.getResponseCacheSize(),
+                    Set.of(HelloGrpc.getSayHelloMethod().getFullMethodName()),
+                    HelloServer::isCacheable).wrap(service);
         }
 
-        server = Grpc.newServerBuilderForPort(opts.getPort(), tlsBuilder.build())
+        System.out.println("Using transport profile: " + opts.getTransportProfile());
+        NettyServerBuilder serverBuilder = opts.getTransportProfile().configure(transports.configure(
+                        NettyServerBuilder.forPort(opts.getPort(), NettySslContextServerCredentials.create(sslContext))))
                 // Add the service with basic authentication via interceptor.
                 .addService(ServerInterceptors.intercept(
-                        new HelloServerImpl(),
-                        new BasicAuthServerInterceptor()))
-                // TODO The default executor doesn't provide optimal performance,
-                //      which is why it's generally recommended to configure your own.
-                // .executor()
-                .build().start();
+                        service,
+                        interceptors))
+                // Codecs that record compression ratio and time.
+                .compressorRegistry(compression.getCompressorRegistry())
+                .decompressorRegistry(Compression.decompressorRegistry());
+
+        // The default executor doesn't provide optimal performance, which is why it's
+        // generally recommended to configure your own. See ServerExecutors for the options.
+        System.out.println("Using executor: " + opts.getExecutor());
+        if (opts.getExecutor() == ServerExecutorType.DIRECT) {
+            serverBuilder.directExecutor();
+        } else {
+            executor = ServerExecutors.create(opts.getExecutor(), opts.getExecutorThreads());
+            if (executor != null) {
+                serverBuilder.executor(executor);
+            }
+        }
+
+        // Calls start on the executor configured above, but then switch to this one.
+        if (deadlineExecutor != null) {
+            serverBuilder.callExecutor(deadlineAdmission.callExecutor(deadlineExecutor));
+        }
+
+        server = serverBuilder.build().start();
 
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
@@ -74,10 +202,112 @@ public class HelloServer {
         });
     }
 
+    private static boolean isCacheable(byte[] request) {
+        try {
+            return HelloServerImpl.isCacheable(HelloRequest.parseFrom(request));
+        } catch (InvalidProtocolBufferException e) {
+            // The call failed anyway, and so there's nothing to cache.
+            return false;
+        }
+    }
+
+    private SslContext buildSslContext(HelloServerOptions opts) throws IOException, GeneralSecurityException {
+        SslContextBuilder sslBuilder;
+
+        if ((opts.getTlsCerts() != null) && (opts.getTlsKey() != null)) {
+            System.out.println("Using TLS with the supplied certificate");
+            if (opts.getTlsReloadInterval() > 0) {
+                // The files are checked for changes periodically. New connections use the
+                // new certificate; existing connections are unaffected.
+                System.out.println("Checking the certificate for changes every " + opts.getTlsReloadInterval() + "s");
+                AdvancedTlsX509KeyManager keyManager = new AdvancedTlsX509KeyManager();
+                tlsReloadScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new DefaultThreadFactory("tls-reload", true));
+                certificateReloader = keyManager.updateIdentityCredentialsFromFile(
+                        new File(opts.getTlsKey()), new File(opts.getTlsCerts()),
+                        opts.getTlsReloadInterval(), TimeUnit.SECONDS, tlsReloadScheduler);
+                sslBuilder = SslContextBuilder.forServer(keyManager);
+            } else {
+                sslBuilder = SslContextBuilder.forServer(
+                        new File(opts.getTlsCerts()),
+                        new File(opts.getTlsKey()));
+            }
+        } else {
+            System.out.println("Using TLS with a self-signed certificate");
+            sslBuilder = SslContextBuilder.forServer(
+                    this.getClass().getResourceAsStream("localhost.pem"),
+                    this.getClass().getResourceAsStream("localhost.key.pem"));
+        }
+
+        sslBuilder.clientAuth(ClientAuth.REQUIRE);
+
+        if (opts.getCaCert() != null) {
+            sslBuilder.trustManager(new File(opts.getCaCert()));
+        } else {
+            sslBuilder.trustManager(this.getClass().getResourceAsStream("ca.pem"));
+        }
+
+        // Resumed sessions skip the expensive part of the handshake. The cache
+        // holds sessions on the server; tickets hold them on the clients.
+        sslBuilder.sessionCacheSize(opts.getTlsSessionCacheSize())
+                .sessionTimeout(opts.getTlsSessionTimeout());
+
+        System.out.println("Using TLS provider: " + opts.getTlsProvider());
+        SslContext sslContext = GrpcSslContexts.configure(sslBuilder,
+                TlsContexts.resolveProvider(opts.getTlsProvider())).build();
+
+        if (opts.getTlsSessionTicketKey() != null) {
+            TlsContexts.setSessionTicketKey(sslContext, Paths.get(opts.getTlsSessionTicketKey()));
+        }
+
+        return sslContext;
+    }
+
     private void stop() throws InterruptedException {
         if (server != null) {
             server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
         }
+
+        if (certificateReloader != null) {
+            try {
+                certificateReloader.close();
+            } catch (IOException e) {
+                e.printStackTrace(System.err);
+            }
+            tlsReloadScheduler.shutdown();
+        }
+
+        // Executors supplied to the server builder are not shut down by the server.
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        if (deadlineExecutor != null) {
+            deadlineExecutor.shutdown();
+            deadlineAdmission.getStats().forEach((method, stats) ->
+                    System.out.println("Deadline admission (" + method + "): " + stats));
+        }
+
+        // Same for the event loop groups.
+        if (transports != null) {
+            transports.shutdown();
+        }
+
+        compression.getStats().forEach((encoding, stats) -> {
+            if (stats.getMessages() > 0) {
+                System.out.println("Compression (" + encoding + "): " + stats);
+            }
+        });
+
+        if (concurrencyLimiter != null) {
+            System.out.println("Concurrency limit: " + concurrencyLimiter.getLimit()
+                    + ", rejected calls: " + concurrencyLimiter.getRejected());
+        }
+
+        // Exports any metrics not yet exported.
+        if (meterProvider != null) {
+            meterProvider.close();
+        }
     }
 
     private void blockUntilShutdown() throws InterruptedException {
@@ -86,7 +316,7 @@ public class HelloServer {
         }
     }
 
-    public static void main(String[] args) throws IOException, InterruptedException {
+    public static void main(String[] args) throws IOException, GeneralSecurityException, InterruptedException {
         final HelloServer server = new HelloServer();
         server.start(args);
         server.blockUntilShutdown();
@@ -1,5 +1,6 @@
 package playground.grpc;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Any;
 import com.google.rpc.BadRequest;
 import com.google.rpc.Code;
@@ -12,12 +13,91 @@ import io.grpc.stub.StreamObserver;
 import io.opentelemetry.api.baggage.Baggage;
 import io.opentelemetry.api.trace.Span;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 public class HelloServerImpl extends HelloGrpc.HelloImplBase {
 
+    private static final Status MISSING_NAME = Status.newBuilder()
+            .setCode(Code.INVALID_ARGUMENT.getNumber())
+            .setMessage("Invalid parameters provided")
+            .addDetails(Any.pack(BadRequest.newBuilder()
+                    .addFieldViolations(
+                            BadRequest.FieldViolation.newBuilder()
+                                    .setField("name")
+                                    .setDescription("Field is required")
+                                    .build())
+                    .build()))
+            .build();
+
+    // Batches at least this large are processed in parallel; for smaller
+    // ones, the coordination costs more than it saves.
+    private static final int PARALLEL_BATCH_THRESHOLD = 256;
+
+    // How long the simulated slow operation takes. Longer than the
+    // deadline used by HelloClient, so that we can see cancellation.
+    private static final long SLOW_WORK_MILLIS = 10_000;
+
+    // Shared by all instances. One thread is sufficient, because the
+    // scheduled tasks only complete calls and never block.
+    private static final ScheduledExecutorService DEFAULT_SCHEDULER = createScheduler();
+
+    private final ScheduledExecutorService scheduler;
+
+    // Prints the trace ID, baggage, and deadline of each call. Off by default, because
+    // console output is synchronized and costs far more than the call itself, which
+    // would skew benchmarks and allocation measurements.
+    private final boolean verbose;
+
+    public HelloServerImpl() {
+        this(false);
+    }
+
+    public HelloServerImpl(boolean verbose) {
+        this(DEFAULT_SCHEDULER, verbose);
+    }
+
+    public HelloServerImpl(ScheduledExecutorService scheduler) {
+        this(scheduler, false);
+    }
+
+    public HelloServerImpl(ScheduledExecutorService scheduler, boolean verbose) {
+        this.scheduler = scheduler;
+        this.verbose = verbose;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "hello-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Otherwise cancelled tasks stay in the queue until their delay
+        // expires, and with many cancelled calls that adds up.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Returns false for the requests that demonstrate deadlines and cancellation: a
+     * cached response would skip the slow path, and with it the demonstration.
+     */
+    public static boolean isCacheable(HelloRequest request) {
+        return !request.getName().equals("Slow") && !request.getName().equals("SlowBlocking");
+    }
+
     @Override
     public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
-        System.out.println("SERVER TRACE_ID: " + Span.current().getSpanContext().getTraceId());
-        System.out.println("BAGGAGE_TEST: " + Baggage.current().getEntryValue("BAGGAGE_TEST"));
+        if (verbose) {
+            System.out.println("SERVER TRACE_ID: " + Span.current().getSpanContext().getTraceId());
+            System.out.println("BAGGAGE_TEST: " + Baggage.current().getEntryValue("BAGGAGE_TEST"));
+        }
 
         // We require that the client tells us their name. If they
         // don't, we refuse to talk to them and use this opportunity
@@ -50,17 +130,7 @@ public class HelloServerImpl extends HelloGrpc.HelloImplBase {
             // There are some predefined detailed objects:
             // https://github.com/googleapis/googleapis/blob/master/google/rpc/error_details.proto
 
-            responseObserver.onError(StatusProto.toStatusRuntimeException(Status.newBuilder()
-                    .setCode(Code.INVALID_ARGUMENT.getNumber())
-                    .setMessage("Invalid parameters provided")
-                    .addDetails(Any.pack(BadRequest.newBuilder()
-                            .addFieldViolations(
-                                    BadRequest.FieldViolation.newBuilder()
-                                            .setField("name")
-                                            .setDescription("Field is required")
-                                            .build())
-                            .build()))
-                    .build()));
+            responseObserver.onError(StatusProto.toStatusRuntimeException(MISSING_NAME));
 
             return;
         }
@@ -73,7 +143,7 @@ public class HelloServerImpl extends HelloGrpc.HelloImplBase {
         // we make further gRPC calls from here.
 
         Deadline deadline = Context.current().getDeadline();
-        if (deadline != null) {
+        if (verbose && (deadline != null)) {
             System.err.println("Request deadline: " + deadline);
         }
 
@@ -86,6 +156,15 @@ public class HelloServerImpl extends HelloGrpc.HelloImplBase {
         // server can detect cancellation.
 
         if (request.getName().equals("Slow")) {
+            slowHello(response, (ServerCallStreamObserver<HelloResponse>) responseObserver);
+            return;
+        }
+
+        // The same as above, but holding on to a server thread for the duration
+        // of the work. Kept to illustrate why this approach doesn't scale: each
+        // slow call occupies an executor thread until it's cancelled.
+
+        if (request.getName().equals("SlowBlocking")) {
 
             // There are several ways to handle cancellation. For example, you could
             // call ServerCallStreamObserver#isCancelled or register a callback with
@@ -138,4 +217,114 @@ public class HelloServerImpl extends HelloGrpc.HelloImplBase {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    // Simulates a long operation without tying up a thread. The service method returns
+    // immediately; the work is scheduled on a timer and completes the call later. In real
+    // life, this would be a continuation of some asynchronous operation (e.g., a
+    // CompletableFuture from a non-blocking client). Thousands of such calls can be
+    // in progress using only the scheduler's thread.
+    private void slowHello(HelloResponse response, ServerCallStreamObserver<HelloResponse> responseObserver) {
+        // Completion and cancellation race with each other; only the first one counts.
+        AtomicBoolean done = new AtomicBoolean();
+
+        ScheduledFuture<?> work = scheduler.schedule(() -> {
+            if (done.compareAndSet(false, true)) {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }, SLOW_WORK_MILLIS, TimeUnit.MILLISECONDS);
+
+        // There are two ways to be notified of cancellation without polling, and we
+        // use both here for illustration. ServerCallStreamObserver#setOnCancelHandler
+        // fires when the call is cancelled (by the client, or because the deadline
+        // expired). A Context.CancellationListener does the same, and has the advantage
+        // that it can be registered from code that doesn't have the observer, because
+        // the context is propagated automatically. Both must stop the work immediately.
+
+        Runnable stop = () -> {
+            if (done.compareAndSet(false, true)) {
+                work.cancel(false);
+                System.err.println("Request cancelled");
+            }
+        };
+
+        responseObserver.setOnCancelHandler(stop);
+
+        Context.current().addListener(context -> stop.run(), MoreExecutors.directExecutor());
+    }
+
+    // Batches and streams don't support the slow paths; every name gets a greeting
+    // straight away. Invalid requests produce an error result, but don't fail the call.
+    private static HelloResult hello(HelloRequest request) {
+        if (request.getName().isBlank()) {
+            return HelloResult.newBuilder()
+                    .setError(MISSING_NAME)
+                    .build();
+        }
+
+        return HelloResult.newBuilder()
+                .setResponse(HelloResponse.newBuilder()
+                        .setGreeting("Hello " + request.getName() + "."))
+                .build();
+    }
+
+    @Override
+    public void batchSayHello(BatchHelloRequest request, StreamObserver<BatchHelloResponse> responseObserver) {
+        // Parallel streams use the common fork-join pool and keep the results in order.
+        Stream<HelloRequest> requests = request.getRequestsList().stream();
+        if (request.getRequestsCount() >= PARALLEL_BATCH_THRESHOLD) {
+            requests = requests.parallel();
+        }
+
+        responseObserver.onNext(BatchHelloResponse.newBuilder()
+                .addAllResults(requests
+                        .map(HelloServerImpl::hello)
+                        .collect(Collectors.toList()))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<HelloRequest> sayHelloStream(StreamObserver<HelloResult> responseObserver) {
+        ServerCallStreamObserver<HelloResult> serverObserver = (ServerCallStreamObserver<HelloResult>) responseObserver;
+
+        // We read the next request only when there's room for another response.
+        // With automatic flow control, a client that sends requests quickly, but
+        // doesn't read the responses, would make us buffer them without limit.
+        serverObserver.disableAutoRequest();
+
+        // Set when we've stopped reading because the client isn't keeping up.
+        AtomicBoolean paused = new AtomicBoolean(true);
+
+        serverObserver.setOnReadyHandler(() -> {
+            if (serverObserver.isReady() && paused.compareAndSet(true, false)) {
+                serverObserver.request(1);
+            }
+        });
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(HelloRequest request) {
+                serverObserver.onNext(hello(request));
+
+                if (serverObserver.isReady()) {
+                    serverObserver.request(1);
+                } else {
+                    // The on-ready handler will resume reading. Callbacks of the same
+                    // call don't run concurrently, so it can't have run in between.
+                    paused.set(true);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // The client cancelled; there's nothing to clean up.
+            }
+
+            @Override
+            public void onCompleted() {
+                serverObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -1,5 +1,6 @@
 package playground.grpc;
 
+import io.netty.handler.ssl.SslProvider;
 import lombok.Data;
 import org.kohsuke.args4j.Option;
 
@@ -23,4 +24,86 @@ public class HelloServerOptions {
 
     @Option(name = "--tls-key")
     String tlsKey;
+
+    @Option(name = "--tls-provider", usage = "TLS implementation: JDK or OPENSSL")
+    SslProvider tlsProvider = SslProvider.JDK;
+
+    @Option(name = "--verbose", usage = "Print the trace ID, baggage, and deadline of each SayHello call")
+    boolean verbose;
+
+    // Zero means no reloading; otherwise, how often to check --tls-certs and --tls-key for changes.
+    @Option(name = "--tls-reload-interval", usage = "Certificate reload check interval, in seconds")
+    long tlsReloadInterval = 0;
+
+    @Option(name = "--tls-session-cache-size")
+    long tlsSessionCacheSize = 20_000;
+
+    @Option(name = "--tls-session-timeout", usage = "How long sessions can be resumed, in seconds")
+    long tlsSessionTimeout = 3600;
+
+    // File with 48 random bytes; servers with the same key can resume each other's sessions. OPENSSL only.
+    @Option(name = "--tls-session-ticket-key")
+    String tlsSessionTicketKey;
+
+    @Option(name = "--executor", usage = "Handler executor: CACHED, FORK_JOIN, VIRTUAL, or DIRECT")
+    ServerExecutorType executor = ServerExecutorType.CACHED;
+
+    // Used only with the FORK_JOIN executor and with --deadline-scheduling.
+    @Option(name = "--executor-threads")
+    int executorThreads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "--transport", usage = "Netty transport: AUTO, EPOLL, or NIO")
+    ServerTransportType transport = ServerTransportType.AUTO;
+
+    // HTTP/2 flow control, stream limits, message size, and keepalive; see TransportProfile.
+    @Option(name = "--transport-profile", usage = "DEFAULT, LOW_LATENCY, or HIGH_THROUGHPUT")
+    TransportProfile transportProfile = TransportProfile.DEFAULT;
+
+    @Option(name = "--boss-threads")
+    int bossThreads = 1;
+
+    // Zero means Netty's default, which is twice the number of cores.
+    @Option(name = "--worker-threads")
+    int workerThreads = 0;
+
+    @Option(name = "--zero-copy", usage = "Use zero-copy protobuf marshallers")
+    boolean zeroCopy;
+
+    // Zero disables the cache.
+    @Option(name = "--response-cache-size", usage = "Size of the SayHello response cache, in bytes")
+    long responseCacheSize = 0;
+
+    // Response compression: gzip or deflate. Applies only to messages
+    // whose serialized size is at least the threshold.
+    @Option(name = "--compression", usage = "Response compression: gzip or deflate")
+    String compression;
+
+    @Option(name = "--compression-threshold", usage = "Minimum size of responses to compress, in bytes")
+    int compressionThreshold = 1024;
+
+    // Zero disables metrics.
+    @Option(name = "--metrics-interval", usage = "How often to log RPC metrics, in seconds")
+    int metricsInterval = 0;
+
+    // Load shedding: calls over an adaptive concurrency limit fail with RESOURCE_EXHAUSTED.
+    @Option(name = "--concurrency-limit", usage = "Enable the adaptive concurrency limit")
+    boolean concurrencyLimit;
+
+    @Option(name = "--initial-concurrency-limit")
+    int initialConcurrencyLimit = 20;
+
+    @Option(name = "--max-concurrency-limit")
+    int maxConcurrencyLimit = 1000;
+
+    // Runs calls earliest deadline first on --executor-threads threads, and rejects
+    // those whose remaining deadline is shorter than their expected service time.
+    @Option(name = "--deadline-scheduling", usage = "Enable deadline-aware admission and scheduling")
+    boolean deadlineScheduling;
+
+    // Makes a fraction of calls slow, to show the effect of hedging on tail latency.
+    @Option(name = "--inject-delay-probability", usage = "Fraction of calls to delay, between 0 and 1")
+    double injectDelayProbability = 0;
+
+    @Option(name = "--inject-delay", usage = "Injected delay, in milliseconds")
+    long injectDelay = 200;
 }
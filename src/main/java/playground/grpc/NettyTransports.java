@@ -0,0 +1,101 @@
+package playground.grpc;
+
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the Netty event loops and channel type of a gRPC server. The
+ * native epoll transport avoids the overhead of the JDK selector and produces
+ * less garbage, which makes a measurable difference at high request rates,
+ * but it's only available on Linux and requires the native library
+ * (see the netty-transport-native-epoll dependency in build.gradle).
+ *
+ * The boss group accepts connections and needs only one thread. The worker
+ * group handles the I/O for all connections; Netty's default size is twice
+ * the number of cores, which is often more than needed when handlers run on
+ * their own executor.
+ */
+public class NettyTransports {
+
+    private final ServerTransportType type;
+
+    private final EventLoopGroup bossGroup;
+
+    private final EventLoopGroup workerGroup;
+
+    private NettyTransports(ServerTransportType type, EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+        this.type = type;
+        this.bossGroup = bossGroup;
+        this.workerGroup = workerGroup;
+    }
+
+    /**
+     * Creates event loop groups of the requested type. Use zero threads
+     * to let Netty pick the group size.
+     */
+    public static NettyTransports create(ServerTransportType requested, int bossThreads, int workerThreads) {
+        ServerTransportType type = resolve(requested);
+        if (type == ServerTransportType.EPOLL) {
+            return new NettyTransports(type,
+                    new EpollEventLoopGroup(bossThreads, new DefaultThreadFactory("grpc-boss-epoll", true)),
+                    new EpollEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-worker-epoll", true)));
+        } else {
+            return new NettyTransports(type,
+                    new NioEventLoopGroup(bossThreads, new DefaultThreadFactory("grpc-boss-nio", true)),
+                    new NioEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-worker-nio", true)));
+        }
+    }
+
+    private static ServerTransportType resolve(ServerTransportType requested) {
+        switch (requested) {
+            case AUTO:
+                return Epoll.isAvailable() ? ServerTransportType.EPOLL : ServerTransportType.NIO;
+            case EPOLL:
+                if (!Epoll.isAvailable()) {
+                    throw new IllegalStateException("Epoll transport not available", Epoll.unavailabilityCause());
+                }
+                return ServerTransportType.EPOLL;
+            case NIO:
+                return ServerTransportType.NIO;
+            default:
+                throw new IllegalArgumentException("Unknown transport type: " + requested);
+        }
+    }
+
+    public ServerTransportType getType() {
+        return type;
+    }
+
+    public Class<? extends ServerChannel> getChannelType() {
+        return type == ServerTransportType.EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public NettyServerBuilder configure(NettyServerBuilder builder) {
+        // When we supply the event loop groups ourselves, the channel
+        // type must be set too, and it must match the groups.
+        return builder
+                .channelType(getChannelType())
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup);
+    }
+
+    /**
+     * Shuts down the event loops. Must be called after the server is terminated,
+     * because gRPC doesn't manage the lifecycle of groups it didn't create.
+     */
+    public void shutdown() throws InterruptedException {
+        bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        bossGroup.terminationFuture().await(10, TimeUnit.SECONDS);
+        workerGroup.terminationFuture().await(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,182 @@
+package playground.grpc;
+
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Call credentials for tokens that expire and must be rotated. The current
+ * token is reused for as long as it's valid. Once it enters the refresh window
+ * (a configurable period before it expires), the next call triggers a refresh
+ * on the executor supplied by gRPC, but still goes out with the current token.
+ * As long as refreshes complete within the window, calls never wait.
+ *
+ * Only when there is no valid token at all (first use, or a failed refresh
+ * that outlasted the window) do calls wait, and even then they don't block:
+ * they're completed asynchronously when the fetch finishes. Concurrent calls
+ * share a single in-flight fetch.
+ *
+ * After a failed refresh, calls that still have a valid token don't trigger
+ * another one for REFRESH_FAILURE_BACKOFF. Otherwise every call in the rest of
+ * the window would hit a token service that is already failing.
+ */
+public class RefreshingCallCredentials extends CallCredentials {
+
+    static final Duration REFRESH_FAILURE_BACKOFF = Duration.ofSeconds(5);
+
+    public static class Token {
+
+        private final String value;
+
+        private final Instant expiresAt;
+
+        public Token(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    // Token together with the derived values we need on every call.
+    private static class CachedToken {
+
+        private final String value;
+
+        private final Instant refreshAt;
+
+        private final Instant expiresAt;
+
+        private CachedToken(Token token, Duration refreshAhead) {
+            this.value = token.getValue();
+            this.refreshAt = token.getExpiresAt().minus(refreshAhead);
+            this.expiresAt = token.getExpiresAt();
+        }
+    }
+
+    private final Metadata.Key<String> key;
+
+    private final Callable<Token> fetcher;
+
+    private final Duration refreshAhead;
+
+    private final Clock clock;
+
+    private volatile CachedToken current;
+
+    // When the last fetch failed, or null if the last fetch succeeded.
+    private volatile Instant lastFailure;
+
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+
+    /**
+     * @param key          the header to place the token into
+     * @param fetcher      obtains a new token; may block, as it's always invoked on the executor
+     * @param refreshAhead how long before expiry to start refreshing
+     */
+    public RefreshingCallCredentials(Metadata.Key<String> key, Callable<Token> fetcher, Duration refreshAhead) {
+        this(key, fetcher, refreshAhead, Clock.systemUTC());
+    }
+
+    // For tests, which need to control time.
+    RefreshingCallCredentials(Metadata.Key<String> key, Callable<Token> fetcher, Duration refreshAhead, Clock clock) {
+        this.key = key;
+        this.fetcher = fetcher;
+        this.refreshAhead = refreshAhead;
+        this.clock = clock;
+    }
+
+    @Override
+    public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
+        CachedToken token = current;
+        Instant now = clock.instant();
+
+        if ((token != null) && now.isBefore(token.expiresAt)) {
+            if (!now.isBefore(token.refreshAt) && !isBackingOff(now)) {
+                // Start a refresh in the background, but don't wait for it.
+                refresh(executor);
+            }
+
+            apply(token, applier);
+            return;
+        }
+
+        refresh(executor).whenComplete((t, e) -> {
+            if (e != null) {
+                applier.fail(Status.UNAUTHENTICATED
+                        .withDescription("Failed to obtain credentials")
+                        .withCause(e));
+            } else {
+                apply(t, applier);
+            }
+        });
+    }
+
+    private boolean isBackingOff(Instant now) {
+        Instant failure = lastFailure;
+        return (failure != null) && now.isBefore(failure.plus(REFRESH_FAILURE_BACKOFF));
+    }
+
+    private void apply(CachedToken token, MetadataApplier applier) {
+        Metadata headers = new Metadata();
+        headers.put(key, token.value);
+        applier.apply(headers);
+    }
+
+    private CompletableFuture<CachedToken> refresh(Executor executor) {
+        for (; ; ) {
+            CompletableFuture<CachedToken> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+
+            CompletableFuture<CachedToken> future = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, future)) {
+                // Someone else started a refresh; try again to join it.
+                continue;
+            }
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        CachedToken token = new CachedToken(fetcher.call(), refreshAhead);
+                        current = token;
+                        lastFailure = null;
+                        inFlight.set(null);
+                        future.complete(token);
+                    } catch (Throwable t) {
+                        lastFailure = clock.instant();
+                        inFlight.set(null);
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Most likely the executor rejected the task.
+                lastFailure = clock.instant();
+                inFlight.set(null);
+                future.completeExceptionally(e);
+            }
+
+            return future;
+        }
+    }
+
+    @Override
+    public void thisUsesUnstableApi() {
+        // Required by the experimental CallCredentials API; see BasicAuthCallCredentials.
+    }
+}
@@ -0,0 +1,255 @@
+package playground.grpc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Caches serialized responses of idempotent unary methods, keyed by the serialized
+ * request. On a hit, the cached bytes are sent as they are, which skips not only the
+ * service implementation, but also request parsing and response serialization.
+ *
+ * This works by converting the service definition to use byte arrays as messages
+ * (see ServerInterceptors#useMarshalledMessages), so that an interceptor can see,
+ * and send, the raw bytes. Protobuf parsing and serialization move into the original
+ * handlers, which we invoke only on cache misses.
+ *
+ * Only use with methods whose responses depend on nothing but the request. Metadata
+ * is not part of the key, and response headers and trailers are not cached. Only
+ * successful responses are cached, and of those, only the responses to requests that
+ * the optional predicate accepts.
+ *
+ * Usage:
+ *
+ * <pre>
+ * ServerServiceDefinition service = responseCache.wrap(new HelloServerImpl().bindService());
+ * </pre>
+ */
+public class ResponseCache {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES_MARSHALLER = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final class Key {
+
+        private final String method;
+
+        private final ByteString request;
+
+        private Key(String method, ByteString request) {
+            this.method = method;
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return method.equals(key.method) && request.equals(key.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, request);
+        }
+    }
+
+    private final Cache<Key, byte[]> cache;
+
+    private final Set<String> cacheableMethods;
+
+    private final Predicate<byte[]> cacheableRequests;
+
+    /**
+     * @param maxBytes         approximate upper bound for the size of the cached requests and responses
+     * @param cacheableMethods full names of the methods to cache (e.g., playground.grpc.Hello/SayHello)
+     */
+    public ResponseCache(long maxBytes, Set<String> cacheableMethods) {
+        this(maxBytes, cacheableMethods, request -> true);
+    }
+
+    /**
+     * @param cacheableRequests tested against the serialized request on a miss, before the
+     *                          response is stored, which means that it doesn't slow down hits
+     */
+    public ResponseCache(long maxBytes, Set<String> cacheableMethods, Predicate<byte[]> cacheableRequests) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Key, byte[]>weigher((key, value) -> key.request.size() + value.length)
+                .recordStats()
+                .build();
+        this.cacheableMethods = Set.copyOf(cacheableMethods);
+        this.cacheableRequests = Objects.requireNonNull(cacheableRequests);
+    }
+
+    public ServerServiceDefinition wrap(ServerServiceDefinition service) {
+        return ServerInterceptors.intercept(
+                ServerInterceptors.useMarshalledMessages(service, BYTES_MARSHALLER),
+                new CachingInterceptor());
+    }
+
+    /**
+     * Returns hit and miss counts, among other things.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private class CachingInterceptor implements ServerInterceptor {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+            if ((method.getType() != MethodDescriptor.MethodType.UNARY)
+                    || !cacheableMethods.contains(method.getFullMethodName())) {
+                return next.startCall(call, headers);
+            }
+
+            // We know the messages are byte arrays, because we converted the service.
+            return (ServerCall.Listener<ReqT>) new CachingListener(
+                    (ServerCall<byte[], byte[]>) call, headers, (ServerCallHandler<byte[], byte[]>) next);
+        }
+    }
+
+    // We don't start the real call until we've seen the request, and then only on a miss.
+    private class CachingListener extends ServerCall.Listener<byte[]> {
+
+        private final ServerCall<byte[], byte[]> call;
+
+        private final Metadata headers;
+
+        private final ServerCallHandler<byte[], byte[]> next;
+
+        private ServerCall.Listener<byte[]> delegate;
+
+        private boolean closed;
+
+        private CachingListener(ServerCall<byte[], byte[]> call, Metadata headers, ServerCallHandler<byte[], byte[]> next) {
+            this.call = call;
+            this.headers = headers;
+            this.next = next;
+
+            // Normally the handler asks for the request; here, it's up to us.
+            call.request(1);
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            if (delegate != null) {
+                // Unary calls have only one request, but let the handler deal with it.
+                delegate.onMessage(message);
+                return;
+            }
+
+            String method = call.getMethodDescriptor().getFullMethodName();
+            Key key = new Key(method, UnsafeByteOperations.unsafeWrap(message));
+
+            byte[] cached = cache.getIfPresent(key);
+            if (cached != null) {
+                closed = true;
+                call.sendHeaders(new Metadata());
+                call.sendMessage(cached);
+                call.close(Status.OK, new Metadata());
+                return;
+            }
+
+            delegate = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+
+                private byte[] response;
+
+                @Override
+                public void sendMessage(byte[] message) {
+                    response = message;
+                    super.sendMessage(message);
+                }
+
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    if (status.isOk() && (response != null) && cacheableRequests.test(message)) {
+                        cache.put(key, response);
+                    }
+                    super.close(status, trailers);
+                }
+            }, headers);
+
+            delegate.onMessage(message);
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (delegate != null) {
+                delegate.onHalfClose();
+            } else if (!closed) {
+                closed = true;
+                call.close(Status.INTERNAL.withDescription("Half-closed without a request"), new Metadata());
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            if (delegate != null) {
+                delegate.onCancel();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (delegate != null) {
+                delegate.onComplete();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if (delegate != null) {
+                delegate.onReady();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package playground.grpc;
+
+/**
+ * Executor strategies for running gRPC service handlers. See
+ * {@link ServerExecutors} for details and guidance on when to use each.
+ */
+public enum ServerExecutorType {
+
+    // gRPC's default: an unbounded cached thread pool.
+    CACHED,
+
+    // A ForkJoinPool bounded to a fixed parallelism.
+    FORK_JOIN,
+
+    // A new virtual thread per task; requires Java 21+.
+    VIRTUAL,
+
+    // Handlers run directly on the transport (Netty event loop) threads.
+    DIRECT
+}
@@ -0,0 +1,58 @@
+package playground.grpc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates executors for gRPC servers. Which one is best depends on the workload:
+ *
+ * <ul>
+ *     <li>CACHED is what gRPC uses when no executor is configured. It's fine for
+ *     light loads, but it creates threads without limit during traffic spikes.</li>
+ *     <li>FORK_JOIN has a fixed number of threads and is recommended by the gRPC
+ *     authors for CPU-bound handlers. Handlers that block will starve it.</li>
+ *     <li>VIRTUAL creates one virtual thread per task, which is cheap and makes
+ *     blocking I/O in handlers acceptable. Requires Java 21+.</li>
+ *     <li>DIRECT runs handlers on the transport threads. It's the fastest option,
+ *     but only safe when handlers never block.</li>
+ * </ul>
+ */
+public class ServerExecutors {
+
+    /**
+     * Returns a new executor of the given type, or null for CACHED and DIRECT, which
+     * are configured on the server builder instead (via the default and via
+     * ServerBuilder#directExecutor, respectively).
+     */
+    public static ExecutorService create(ServerExecutorType type, int threads) {
+        switch (type) {
+            case CACHED:
+            case DIRECT:
+                return null;
+            case FORK_JOIN:
+                // Async mode uses FIFO scheduling for tasks that are never
+                // joined, which is how gRPC submits its work.
+                return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            default:
+                throw new IllegalArgumentException("Unknown executor type: " + type);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // Looked up reflectively so that the project still builds on Java 17.
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(java.util.concurrent.Executors.class, "newVirtualThreadPerTaskExecutor",
+                            MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create virtual thread executor", t);
+        }
+    }
+}
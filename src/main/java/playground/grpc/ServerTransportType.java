@@ -0,0 +1,17 @@
+package playground.grpc;
+
+/**
+ * Netty channel implementations available to the gRPC server. See
+ * {@link NettyTransports} for details.
+ */
+public enum ServerTransportType {
+
+    // Epoll when available, otherwise NIO.
+    AUTO,
+
+    // Native Linux transport; fails if the native library can't be loaded.
+    EPOLL,
+
+    // Portable, selector-based Java NIO transport.
+    NIO
+}
@@ -0,0 +1,107 @@
+package playground.grpc;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a gRPC service config (as used by ManagedChannelBuilder#defaultServiceConfig)
+ * with per-method retry or hedging policies. See
+ * https://github.com/grpc/grpc/blob/master/doc/service_config.md and
+ * https://github.com/grpc/proposal/blob/master/A6-client-retries.md
+ *
+ * <ul>
+ *     <li>Retries send another attempt after the previous one fails with a retryable
+ *     status. They help with transient failures, but not with slow servers.</li>
+ *     <li>Hedging sends another attempt if there is no response after a delay, without
+ *     cancelling the first one; the first response wins. This cuts tail latency caused
+ *     by an occasional slow server, at the cost of extra load. Only use with idempotent
+ *     methods.</li>
+ * </ul>
+ *
+ * Throttling stops retries and hedges when too many calls are failing, so that a
+ * struggling server doesn't receive even more traffic. Each failure costs a token,
+ * each success returns tokenRatio tokens, and extra attempts are sent only while more
+ * than half of maxTokens are available.
+ *
+ * Remember to enable retries on the channel builder (ManagedChannelBuilder#enableRetry).
+ */
+public class ServiceConfigBuilder {
+
+    private final List<Map<String, Object>> methodConfigs = new ArrayList<>();
+
+    private Map<String, Object> retryThrottling;
+
+    public ServiceConfigBuilder retry(MethodDescriptor<?, ?> method, int maxAttempts,
+                                      Duration initialBackoff, Duration maxBackoff, double backoffMultiplier,
+                                      List<Status.Code> retryableStatusCodes) {
+        Map<String, Object> policy = new LinkedHashMap<>();
+        policy.put("maxAttempts", (double) maxAttempts);
+        policy.put("initialBackoff", duration(initialBackoff));
+        policy.put("maxBackoff", duration(maxBackoff));
+        policy.put("backoffMultiplier", backoffMultiplier);
+        policy.put("retryableStatusCodes", codes(retryableStatusCodes));
+        return methodConfig(method, "retryPolicy", policy);
+    }
+
+    /**
+     * @param nonFatalStatusCodes statuses that don't stop the remaining hedged attempts;
+     *                            any other failure is returned to the caller immediately
+     */
+    public ServiceConfigBuilder hedge(MethodDescriptor<?, ?> method, int maxAttempts, Duration hedgingDelay,
+                                      List<Status.Code> nonFatalStatusCodes) {
+        Map<String, Object> policy = new LinkedHashMap<>();
+        policy.put("maxAttempts", (double) maxAttempts);
+        policy.put("hedgingDelay", duration(hedgingDelay));
+        policy.put("nonFatalStatusCodes", codes(nonFatalStatusCodes));
+        return methodConfig(method, "hedgingPolicy", policy);
+    }
+
+    public ServiceConfigBuilder throttle(int maxTokens, double tokenRatio) {
+        retryThrottling = new LinkedHashMap<>();
+        retryThrottling.put("maxTokens", (double) maxTokens);
+        retryThrottling.put("tokenRatio", tokenRatio);
+        return this;
+    }
+
+    public Map<String, Object> build() {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("methodConfig", methodConfigs);
+        if (retryThrottling != null) {
+            config.put("retryThrottling", retryThrottling);
+        }
+        return config;
+    }
+
+    private ServiceConfigBuilder methodConfig(MethodDescriptor<?, ?> method, String policyName, Map<String, Object> policy) {
+        Map<String, Object> name = new LinkedHashMap<>();
+        name.put("service", method.getServiceName());
+        name.put("method", method.getBareMethodName());
+
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", List.of(name));
+        methodConfig.put(policyName, policy);
+        methodConfigs.add(methodConfig);
+        return this;
+    }
+
+    // Service config uses the JSON representation of google.protobuf.Duration: seconds,
+    // with up to nine fractional digits, e.g., 0.0001s. Doubles would turn small values
+    // into scientific notation (1.0E-4s), which the channel rejects.
+    static String duration(Duration duration) {
+        return BigDecimal.valueOf(duration.toNanos(), 9).stripTrailingZeros().toPlainString() + "s";
+    }
+
+    private static List<Object> codes(List<Status.Code> codes) {
+        return codes.stream()
+                .map(Status.Code::name)
+                .collect(Collectors.toList());
+    }
+}
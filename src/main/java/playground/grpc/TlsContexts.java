@@ -0,0 +1,70 @@
+package playground.grpc;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
+
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Helpers for the Netty TLS contexts used by HelloServer and HelloClient. We build the
+ * contexts ourselves (with GrpcSslContexts), rather than use TlsServerCredentials and
+ * TlsChannelCredentials, because that's the only way to choose the TLS implementation
+ * and tune session resumption.
+ *
+ * <ul>
+ *     <li>JDK is Java's own TLS stack. It supports session resumption via the session
+ *     cache and, for TLS 1.3, stateless session tickets (enabled by default since Java 13).</li>
+ *     <li>OPENSSL uses BoringSSL via netty-tcnative, and is considerably faster, especially
+ *     for handshakes. It supports session tickets with keys we control, which means that
+ *     several servers (or restarts of the same server) can resume each other's sessions.</li>
+ * </ul>
+ *
+ * Resumption skips the expensive public key operations, which is what makes handshakes
+ * slow; clients must reuse the same SslContext for their session cache to work.
+ */
+public class TlsContexts {
+
+    // 16 bytes each of name, HMAC key, and AES key.
+    private static final int TICKET_KEY_LENGTH = 48;
+
+    /**
+     * Returns the provider, if it's available, and fails otherwise. We don't want to fall
+     * back quietly, as that would make benchmark results misleading.
+     */
+    public static SslProvider resolveProvider(SslProvider requested) {
+        if ((requested != SslProvider.JDK) && !OpenSsl.isAvailable()) {
+            throw new IllegalStateException("OpenSSL is not available", OpenSsl.unavailabilityCause());
+        }
+        return requested;
+    }
+
+    /**
+     * Sets the key used to encrypt session tickets, read from a file with 48 random bytes
+     * (e.g., head -c 48 /dev/urandom > ticket.key). Servers that share the key accept each
+     * other's tickets. Rotate it regularly, as it protects the secrecy of all resumed sessions.
+     */
+    public static void setSessionTicketKey(SslContext sslContext, Path keyFile) throws IOException {
+        SSLSessionContext sessionContext = sslContext.sessionContext();
+        if (!(sessionContext instanceof OpenSslSessionContext)) {
+            throw new IllegalArgumentException("Session ticket keys require the OPENSSL provider");
+        }
+
+        byte[] key = Files.readAllBytes(keyFile);
+        if (key.length != TICKET_KEY_LENGTH) {
+            throw new IllegalArgumentException("Session ticket key must be " + TICKET_KEY_LENGTH
+                    + " bytes, got " + key.length + ": " + keyFile);
+        }
+
+        ((OpenSslSessionContext) sessionContext).setTicketKeys(new OpenSslSessionTicketKey(
+                Arrays.copyOfRange(key, 0, 16),
+                Arrays.copyOfRange(key, 16, 32),
+                Arrays.copyOfRange(key, 32, 48)));
+    }
+}
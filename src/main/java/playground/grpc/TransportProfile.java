@@ -0,0 +1,118 @@
+package playground.grpc;
+
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named sets of HTTP/2 and transport settings for the Netty server and channel
+ * builders. Use the same profile on both sides; the server settings include what
+ * it allows the clients to do (e.g., how often they may send keepalive pings).
+ *
+ * The flow-control window is how much data a sender may have in flight on a
+ * stream (and, separately, on the connection) before the receiver acknowledges
+ * it. A stream can't go faster than window / round-trip time, so on a long, fat
+ * link a small window caps throughput; on the other hand, the receiver has to be
+ * prepared to buffer a full window per stream. gRPC's default is 1 MiB with
+ * automatic tuning based on BDP (bandwidth-delay product) pings, which adapts,
+ * but only gradually, and the pings compete with the calls.
+ *
+ * Use backpressure.StreamingThroughputHarness to see how the profiles compare
+ * on your network.
+ */
+public enum TransportProfile {
+
+    // gRPC's defaults: a 1 MiB window with automatic tuning, unlimited concurrent
+    // streams, messages up to 4 MiB, and no client keepalive.
+    DEFAULT(0, 0, 0, 0, 0, false),
+
+    // Many small unary calls. The window hardly matters for small messages, so we
+    // fix it and save the BDP pings. Small maximum message size, so that oversized
+    // requests fail fast rather than tie up the server. Frequent keepalive pings
+    // detect dead connections before calls time out on them, and keep idle
+    // connections open, so that the next call doesn't pay for a new handshake.
+    LOW_LATENCY(1024 * 1024, 1000, 1024 * 1024, 20, 5, true),
+
+    // Few long-lived streams with a lot of data. A large fixed window keeps the
+    // pipe full from the start, even with a high round-trip time; fewer concurrent
+    // streams bound how much the server may need to buffer per connection.
+    HIGH_THROUGHPUT(8 * 1024 * 1024, 100, 16 * 1024 * 1024, 60, 20, false);
+
+    // Clients using any of the profiles send keepalive pings at most this often.
+    // The server closes connections of clients that ping more often.
+    private static final long MIN_CLIENT_KEEPALIVE_SECONDS = 10;
+
+    // Zero means the gRPC default, for all of these.
+
+    private final int flowControlWindow;
+
+    private final int maxConcurrentStreams;
+
+    private final int maxInboundMessageSize;
+
+    private final long keepAliveTimeSeconds;
+
+    private final long keepAliveTimeoutSeconds;
+
+    private final boolean keepAliveWithoutCalls;
+
+    TransportProfile(int flowControlWindow, int maxConcurrentStreams, int maxInboundMessageSize,
+                     long keepAliveTimeSeconds, long keepAliveTimeoutSeconds, boolean keepAliveWithoutCalls) {
+        this.flowControlWindow = flowControlWindow;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxInboundMessageSize = maxInboundMessageSize;
+        this.keepAliveTimeSeconds = keepAliveTimeSeconds;
+        this.keepAliveTimeoutSeconds = keepAliveTimeoutSeconds;
+        this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    }
+
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    public NettyServerBuilder configure(NettyServerBuilder builder) {
+        if (flowControlWindow > 0) {
+            // Unlike initialFlowControlWindow, this turns off automatic tuning.
+            builder.flowControlWindow(flowControlWindow);
+        }
+        if (maxConcurrentStreams > 0) {
+            // Sent to the client in the SETTINGS frame; calls over the limit
+            // wait on the client for a free stream (see ChannelPool).
+            builder.maxConcurrentCallsPerConnection(maxConcurrentStreams);
+        }
+        if (maxInboundMessageSize > 0) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
+        }
+        if (keepAliveTimeSeconds > 0) {
+            builder.keepAliveTime(keepAliveTimeSeconds, TimeUnit.SECONDS)
+                    .keepAliveTimeout(keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                    .permitKeepAliveTime(MIN_CLIENT_KEEPALIVE_SECONDS, TimeUnit.SECONDS)
+                    .permitKeepAliveWithoutCalls(true);
+        }
+        return builder;
+    }
+
+    public NettyChannelBuilder configure(NettyChannelBuilder builder) {
+        if (flowControlWindow > 0) {
+            builder.flowControlWindow(flowControlWindow);
+        }
+        if (maxInboundMessageSize > 0) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
+        }
+        if (keepAliveTimeSeconds > 0) {
+            builder.keepAliveTime(keepAliveTimeSeconds, TimeUnit.SECONDS)
+                    .keepAliveTimeout(keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                    .keepAliveWithoutCalls(keepAliveWithoutCalls);
+        }
+        return builder;
+    }
+}
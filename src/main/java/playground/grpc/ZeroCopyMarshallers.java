@@ -0,0 +1,110 @@
+package playground.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.BindableService;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Switches generated services and stubs over to {@link ZeroCopyProtoMarshaller}.
+ * The generated code always uses the standard protobuf marshallers, but the
+ * marshallers are part of the method descriptors, and those we can replace:
+ *
+ * <pre>
+ * // Server
+ * serverBuilder.addService(ZeroCopyMarshallers.bind(new HelloServerImpl()));
+ *
+ * // Client
+ * HelloGrpc.newStub(channel).withInterceptors(ZeroCopyMarshallers.clientInterceptor());
+ * </pre>
+ *
+ * Either side can use the new marshallers independently of the other, because
+ * the wire format doesn't change.
+ */
+public class ZeroCopyMarshallers {
+
+    private static final Map<MethodDescriptor<?, ?>, MethodDescriptor<?, ?>> CONVERTED = new ConcurrentHashMap<>();
+
+    private static final ClientInterceptor CLIENT_INTERCEPTOR = new ClientInterceptor() {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            return next.newCall(convert(method), callOptions);
+        }
+    };
+
+    public static ServerServiceDefinition bind(BindableService service) {
+        return convert(service.bindService());
+    }
+
+    public static ServerServiceDefinition convert(ServerServiceDefinition service) {
+        ServiceDescriptor original = service.getServiceDescriptor();
+
+        // Keep the schema descriptor, which is needed for server reflection.
+        ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(original.getName())
+                .setSchemaDescriptor(original.getSchemaDescriptor());
+
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+            ServerMethodDefinition<?, ?> converted = convert(method);
+            descriptorBuilder.addMethod(converted.getMethodDescriptor());
+            methods.add(converted);
+        }
+
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        for (ServerMethodDefinition<?, ?> method : methods) {
+            builder.addMethod(method);
+        }
+        return builder.build();
+    }
+
+    public static ClientInterceptor clientInterceptor() {
+        return CLIENT_INTERCEPTOR;
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> convert(ServerMethodDefinition<ReqT, RespT> method) {
+        return ServerMethodDefinition.create(convert(method.getMethodDescriptor()), method.getServerCallHandler());
+    }
+
+    /**
+     * Returns a copy of the method descriptor with zero-copy marshallers, or the descriptor
+     * itself if its messages aren't protobuf messages.
+     */
+    @SuppressWarnings("unchecked")
+    public static <ReqT, RespT> MethodDescriptor<ReqT, RespT> convert(MethodDescriptor<ReqT, RespT> method) {
+        return (MethodDescriptor<ReqT, RespT>) CONVERTED.computeIfAbsent(method, m -> {
+            MethodDescriptor.Marshaller<ReqT> requestMarshaller = convert(method.getRequestMarshaller());
+            MethodDescriptor.Marshaller<RespT> responseMarshaller = convert(method.getResponseMarshaller());
+            if ((requestMarshaller == null) || (responseMarshaller == null)) {
+                return method;
+            }
+            return method.toBuilder(requestMarshaller, responseMarshaller).build();
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> MethodDescriptor.Marshaller<T> convert(MethodDescriptor.Marshaller<T> marshaller) {
+        if (marshaller instanceof ZeroCopyProtoMarshaller) {
+            return marshaller;
+        }
+
+        if (marshaller instanceof MethodDescriptor.PrototypeMarshaller) {
+            Object prototype = ((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype();
+            if (prototype instanceof Message) {
+                return new ZeroCopyProtoMarshaller((Message) prototype);
+            }
+        }
+
+        return null;
+    }
+}
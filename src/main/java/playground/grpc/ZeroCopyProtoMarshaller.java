@@ -0,0 +1,170 @@
+package playground.grpc;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import io.grpc.Detachable;
+import io.grpc.HasByteBuffer;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Protobuf marshaller that avoids copying messages through intermediate byte arrays.
+ *
+ * <ul>
+ *     <li>Serialization: the stream returned by {@link #stream} is Drainable and KnownLength,
+ *     which lets the transport ask for the message to be written straight into its own
+ *     (with Netty, pooled direct) buffers. The standard protobuf marshaller already does
+ *     this well, so we delegate to it.</li>
+ *     <li>Parsing: when the transport supplies a stream that's Detachable and HasByteBuffer
+ *     (Netty does), we take ownership of the underlying buffers and parse directly from
+ *     them. If the message spans several buffers, we first gather it into a direct buffer
+ *     from a small shared pool. The standard marshaller, in contrast, always copies the
+ *     message into a heap byte array first.</li>
+ * </ul>
+ *
+ * Aliasing is disabled, so parsed messages don't reference the transport's buffers,
+ * which we can thus release as soon as parsing completes.
+ *
+ * Use via {@link ZeroCopyMarshallers}.
+ */
+public class ZeroCopyProtoMarshaller<T extends Message> implements MethodDescriptor.PrototypeMarshaller<T> {
+
+    // Larger messages get a temporary buffer, so that the pool doesn't hold on to lots of memory.
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MIN_POOLED_BUFFER_SIZE = 16 * 1024;
+
+    // Shared rather than per thread: with virtual threads (--executor VIRTUAL), every call
+    // runs on a new thread, and a per-thread buffer would be allocated for every gathered
+    // message. Buffers are only held while parsing, so a few per core are plenty; when the
+    // pool is empty, we allocate, and when it's full, we let the buffer go.
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    private final T prototype;
+
+    private final Parser<T> parser;
+
+    private final MethodDescriptor.Marshaller<T> delegate;
+
+    @SuppressWarnings("unchecked")
+    public ZeroCopyProtoMarshaller(T prototype) {
+        this.prototype = prototype;
+        this.parser = (Parser<T>) prototype.getParserForType();
+        this.delegate = ProtoUtils.marshaller(prototype);
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return prototype;
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        @SuppressWarnings("unchecked")
+        Class<T> clazz = (Class<T>) prototype.getClass();
+        return clazz;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return delegate.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        if ((stream instanceof Detachable) && (stream instanceof HasByteBuffer)
+                && ((HasByteBuffer) stream).byteBufferSupported()) {
+            // After detach(), the original stream is empty and we own the buffers;
+            // closing the detached stream releases them back to the transport.
+            try (InputStream detached = ((Detachable) stream).detach()) {
+                return parseFromBuffers(detached);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read message").withCause(e).asRuntimeException();
+            }
+        }
+
+        // Not a transport stream that supports buffer access (e.g., the in-process
+        // transport). The standard marshaller handles that as well as anything.
+        return delegate.parse(stream);
+    }
+
+    private T parseFromBuffers(InputStream stream) throws IOException {
+        HasByteBuffer buffers = (HasByteBuffer) stream;
+        int size = stream.available();
+
+        ByteBuffer first = buffers.getByteBuffer();
+        if (first == null) {
+            return parse(CodedInputStream.newInstance(new byte[0]));
+        }
+
+        if (first.remaining() >= size) {
+            // The common case: the whole message is in one buffer.
+            ByteBuffer slice = first.duplicate();
+            slice.limit(slice.position() + size);
+            return parse(CodedInputStream.newInstance(slice));
+        }
+
+        // Gather the message into one direct buffer.
+        ByteBuffer target = borrowBuffer(size);
+        try {
+            ByteBuffer buffer = first;
+            while ((buffer != null) && target.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), target.remaining());
+                ByteBuffer slice = buffer.duplicate();
+                slice.limit(slice.position() + length);
+                target.put(slice);
+                stream.skip(length);
+                buffer = buffers.getByteBuffer();
+            }
+
+            target.flip();
+            // Without aliasing, the message doesn't reference the buffer once parsed.
+            return parse(CodedInputStream.newInstance(target));
+        } finally {
+            releaseBuffer(target);
+        }
+    }
+
+    private T parse(CodedInputStream input) {
+        try {
+            return parser.parseFrom(input);
+        } catch (InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static ByteBuffer borrowBuffer(int size) {
+        if (size > MAX_POOLED_BUFFER_SIZE) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        if ((buffer == null) || (buffer.capacity() < size)) {
+            // Powers of two, so that the pooled buffers settle on a few sizes. A buffer
+            // that's too small is dropped, and this one takes its place on release.
+            int capacity = Math.max(MIN_POOLED_BUFFER_SIZE, Integer.highestOneBit(size - 1) << 1);
+            buffer = ByteBuffer.allocateDirect(Math.min(capacity, MAX_POOLED_BUFFER_SIZE));
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+}
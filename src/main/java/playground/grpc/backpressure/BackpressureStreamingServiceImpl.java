@@ -1,19 +1,37 @@
 package playground.grpc.backpressure;
 
+import com.google.protobuf.CodedOutputStream;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import playground.grpc.BatchedStreamingResponse;
 import playground.grpc.StreamingRequest;
 import playground.grpc.StreamingResponse;
 import playground.grpc.StreamingServiceGrpc;
 
 /**
  * Implementation of server streaming with implemented backpressure. Server checks if stream is ready to accept
- * new message before sending them.
+ * new message before sending them; see {@link StreamProducer}.
  */
 public class BackpressureStreamingServiceImpl extends StreamingServiceGrpc.StreamingServiceImplBase {
 
     private static final int TOTAL_MESSAGES = 1_000_000;
 
+    // Batches start at this size and never get smaller.
+    private static final int MIN_BATCH_BYTES = 256;
+
+    // By default, aim to fill one HTTP/2 DATA frame (16 KB, the default maximum frame size).
+    public static final int DEFAULT_TARGET_BATCH_BYTES = 16 * 1024;
+
+    private final int targetBatchBytes;
+
+    public BackpressureStreamingServiceImpl() {
+        this(DEFAULT_TARGET_BATCH_BYTES);
+    }
+
+    public BackpressureStreamingServiceImpl(int targetBatchBytes) {
+        this.targetBatchBytes = Math.max(targetBatchBytes, MIN_BATCH_BYTES);
+    }
+
     @Override
     public void streamingMethod(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver) {
         // Convert response observer to ServerCallStreamObserver, so we can access additional API
@@ -21,27 +39,89 @@ public class BackpressureStreamingServiceImpl extends StreamingServiceGrpc.Strea
         ServerCallStreamObserver<StreamingResponse> serverCallStreamObserver =
                 (ServerCallStreamObserver<StreamingResponse>) responseObserver;
 
-        // This handler will be called each time stream becomes ready and can accept new messages.
-        // Handler is executed in the same thread as service method, so we must return from it before
-        // this handler is actually executed
-        serverCallStreamObserver.setOnReadyHandler(new Runnable() {
+        // The producer sends messages only while the stream is ready to accept them, and asks the
+        // source for the next one only then. isReady() doesn't return false immediately after the
+        // client stops requesting more messages. There is still some amount of buffering, but it
+        // will not produce OutOfMemoryError.
+        StreamProducer.produce(new StreamProducer.Source<StreamingResponse>() {
+
+            private int counter;
+
+            @Override
+            public StreamingResponse next() {
+                return counter < TOTAL_MESSAGES
+                        ? StreamingResponse.newBuilder().setRandomId(counter++).build()
+                        : null;
+            }
+
+            @Override
+            public void close() {
+                if (serverCallStreamObserver.isCancelled()) {
+                    System.out.println("Stream canceled");
+                }
+            }
+        }, responseObserver);
+    }
+
+    /**
+     * Streams the same values as {@link #streamingMethod}, but batched. The batch size
+     * adapts to how quickly the transport drains: while the stream stays ready after a
+     * send, the batch size doubles, up to the target size; when the stream stops being
+     * ready (i.e., the client or the network can't keep up), it halves. This way we use
+     * large messages when throughput is what matters, and we don't buffer large
+     * messages for a slow client.
+     */
+    @Override
+    public void batchedStreamingMethod(StreamingRequest request, StreamObserver<BatchedStreamingResponse> responseObserver) {
+        ServerCallStreamObserver<BatchedStreamingResponse> serverCallStreamObserver =
+                (ServerCallStreamObserver<BatchedStreamingResponse>) responseObserver;
+
+        StreamProducer.produce(new StreamProducer.Source<BatchedStreamingResponse>() {
 
             private int counter;
 
+            private int batchBytes = MIN_BATCH_BYTES;
+
+            // Whether the previous batch left the stream ready.
+            private boolean grow;
+
+            private final BatchedStreamingResponse.Builder builder = BatchedStreamingResponse.newBuilder();
+
             @Override
-            public void run() {
-                // isReady() method doesn't return false immediately after client stops requesting more messages.
-                // There is still some amount of buffering but will not produce OutOfMemoryError.
-                while (serverCallStreamObserver.isReady() && !serverCallStreamObserver.isCancelled()
-                        && counter < TOTAL_MESSAGES) {
-                    responseObserver.onNext(StreamingResponse.newBuilder().setRandomId(counter++).build());
+            public BatchedStreamingResponse next() {
+                if (counter >= TOTAL_MESSAGES) {
+                    return null;
                 }
-                if (counter >= TOTAL_MESSAGES && !serverCallStreamObserver.isCancelled()) {
-                    responseObserver.onCompleted();
+
+                if (grow) {
+                    batchBytes = Math.min(batchBytes * 2, targetBatchBytes);
                 }
+                grow = true;
+
+                builder.clear();
+
+                int bytes = 0;
+                while (bytes < batchBytes && counter < TOTAL_MESSAGES) {
+                    int value = counter++;
+                    builder.addRandomIds(value);
+                    bytes += CodedOutputStream.computeInt32SizeNoTag(value);
+                }
+
+                return builder.build();
+            }
+
+            @Override
+            public void onPaused() {
+                batchBytes = Math.max(batchBytes / 2, MIN_BATCH_BYTES);
+                grow = false;
             }
-        });
 
-        serverCallStreamObserver.setOnCancelHandler(() -> System.out.println("Stream canceled"));
+            @Override
+            public void close() {
+                if (serverCallStreamObserver.isCancelled()) {
+                    System.out.println("Stream canceled");
+                }
+            }
+        }, responseObserver);
     }
 }
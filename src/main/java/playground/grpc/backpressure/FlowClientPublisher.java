@@ -0,0 +1,172 @@
+package playground.grpc.backpressure;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+
+/**
+ * Exposes a server-streaming call as a {@link Flow.Publisher}. Each subscription
+ * starts a new call. Automatic inbound flow control is disabled, which means that
+ * gRPC asks the server for more messages only when the subscriber signals demand
+ * via {@link Flow.Subscription#request(long)}. A slow subscriber thus slows down the
+ * server, rather than having messages pile up in the transport.
+ *
+ * Usage:
+ *
+ * <pre>
+ * Flow.Publisher&lt;StreamingResponse&gt; publisher = new FlowClientPublisher&lt;&gt;(request, stub::streamingMethod);
+ * </pre>
+ */
+public class FlowClientPublisher<ReqT, RespT> implements Flow.Publisher<RespT> {
+
+    private final ReqT request;
+
+    private final BiConsumer<ReqT, StreamObserver<RespT>> call;
+
+    public FlowClientPublisher(ReqT request, BiConsumer<ReqT, StreamObserver<RespT>> call) {
+        this.request = request;
+        this.call = call;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RespT> subscriber) {
+        CallSubscription subscription = new CallSubscription(subscriber);
+        call.accept(request, subscription);
+        subscription.started();
+    }
+
+    private class CallSubscription implements Flow.Subscription, ClientResponseObserver<ReqT, RespT> {
+
+        private final Flow.Subscriber<? super RespT> subscriber;
+
+        private ClientCallStreamObserver<ReqT> requestStream;
+
+        // Demand signalled before the call started, which we can't pass on to gRPC yet.
+        private long pendingDemand;
+
+        private boolean started;
+
+        private volatile boolean done;
+
+        // Set when the subscriber asks for a non-positive number of items.
+        private volatile IllegalArgumentException invalidDemand;
+
+        private CallSubscription(Flow.Subscriber<? super RespT> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+            this.requestStream = requestStream;
+
+            // Don't ask for any messages until the subscriber does.
+            requestStream.disableAutoRequestWithInitialRequest(0);
+
+            // We're called before the call is started, which guarantees
+            // that onSubscribe is the first signal the subscriber sees.
+            subscriber.onSubscribe(this);
+        }
+
+        private void started() {
+            long demand;
+            synchronized (this) {
+                started = true;
+                demand = pendingDemand;
+                pendingDemand = 0;
+            }
+
+            if (done) {
+                // Cancelled from within onSubscribe.
+                requestStream.cancel("Subscription cancelled", null);
+            } else if (invalidDemand != null) {
+                requestStream.cancel("Invalid demand", invalidDemand);
+            } else if (demand > 0) {
+                forward(demand);
+            }
+        }
+
+        private synchronized boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Required by rule 3.9 of the Reactive Streams specification. We may be on
+                // any thread, and signals must not be concurrent (rule 1.3), so rather than
+                // call onError here, we cancel the call and report the error when gRPC
+                // tells us that the call is closed, as we do with any other outcome.
+                if (!done && (invalidDemand == null)) {
+                    invalidDemand = new IllegalArgumentException("Non-positive subscription request: " + n);
+                    // Calls can't be cancelled before they're started; see started().
+                    if (isStarted()) {
+                        requestStream.cancel("Invalid demand", invalidDemand);
+                    }
+                }
+                return;
+            }
+
+            synchronized (this) {
+                if (!started) {
+                    pendingDemand = (pendingDemand + n < 0) ? Long.MAX_VALUE : pendingDemand + n;
+                    return;
+                }
+            }
+
+            forward(n);
+        }
+
+        private void forward(long n) {
+            if (done || (invalidDemand != null)) {
+                return;
+            }
+
+            // gRPC counts demand in ints, and tracks it internally with longs. We treat
+            // anything larger than an int as unbounded, as the specification suggests.
+            requestStream.request((int) Math.min(n, Integer.MAX_VALUE));
+        }
+
+        @Override
+        public void cancel() {
+            if (!done) {
+                done = true;
+                // Calls can't be cancelled before they're started; if that's the
+                // case, started() will do it for us.
+                if (isStarted()) {
+                    requestStream.cancel("Subscription cancelled", null);
+                }
+            }
+        }
+
+        @Override
+        public void onNext(RespT value) {
+            if (!done && (invalidDemand == null)) {
+                subscriber.onNext(value);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                done = true;
+                subscriber.onError(invalidDemand != null ? invalidDemand : t);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (!done) {
+                done = true;
+                // The call may have completed before the cancellation took effect.
+                if (invalidDemand != null) {
+                    subscriber.onError(invalidDemand);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+        }
+    }
+}
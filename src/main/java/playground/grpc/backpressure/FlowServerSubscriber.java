@@ -0,0 +1,112 @@
+package playground.grpc.backpressure;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds a {@link Flow.Publisher} into a server-streaming response. Items are
+ * requested from the publisher only while the stream is ready, a few at a
+ * time, which means that the publisher is slowed down by a slow client
+ * rather than messages being buffered by the transport.
+ *
+ * Usage, from within a service method:
+ *
+ * <pre>
+ * FlowServerSubscriber.subscribe(publisher, responseObserver);
+ * </pre>
+ */
+public class FlowServerSubscriber<T> implements Flow.Subscriber<T> {
+
+    public static final int DEFAULT_PREFETCH = 16;
+
+    private final ServerCallStreamObserver<T> responseObserver;
+
+    private final int prefetch;
+
+    // Items requested from the publisher but not yet delivered.
+    private final AtomicLong outstanding = new AtomicLong();
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean cancelled;
+
+    public FlowServerSubscriber(StreamObserver<T> responseObserver, int prefetch) {
+        if (prefetch <= 0) {
+            // Requesting it would break rule 3.9, or never request anything.
+            throw new IllegalArgumentException("prefetch must be positive: " + prefetch);
+        }
+        this.responseObserver = (ServerCallStreamObserver<T>) responseObserver;
+        this.prefetch = prefetch;
+
+        // Both handlers must be set from within the service method.
+        this.responseObserver.setOnReadyHandler(this::requestIfReady);
+        this.responseObserver.setOnCancelHandler(() -> {
+            cancelled = true;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        });
+    }
+
+    public static <T> void subscribe(Flow.Publisher<T> publisher, StreamObserver<T> responseObserver) {
+        publisher.subscribe(new FlowServerSubscriber<>(responseObserver, DEFAULT_PREFETCH));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            // Rule 2.5: reject a second subscription.
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+
+        if (cancelled) {
+            subscription.cancel();
+        } else {
+            requestIfReady();
+        }
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (cancelled) {
+            return;
+        }
+
+        responseObserver.onNext(item);
+        outstanding.decrementAndGet();
+        requestIfReady();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!cancelled) {
+            responseObserver.onError(Status.fromThrowable(t).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (!cancelled) {
+            responseObserver.onCompleted();
+        }
+    }
+
+    // Invoked from both the publisher's thread and the transport's onReady
+    // callback. The compare-and-set ensures that only one of them requests
+    // the next batch, once the previous one has been delivered in full.
+    private void requestIfReady() {
+        Flow.Subscription s = subscription;
+        if ((s != null) && !cancelled && responseObserver.isReady()
+                && outstanding.compareAndSet(0, prefetch)) {
+            s.request(prefetch);
+        }
+    }
+}
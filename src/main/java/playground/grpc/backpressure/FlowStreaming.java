@@ -0,0 +1,116 @@
+package playground.grpc.backpressure;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import lombok.SneakyThrows;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end demand signalling: the client subscribes to the call as a
+ * {@link Flow.Publisher} and processes messages on its own thread, requesting
+ * one more only when it's done with the previous one. The server feeds a
+ * publisher into the response. Unlike in SuccessfulStreaming, the gRPC threads
+ * never sleep and nothing is buffered beyond what was asked for.
+ */
+public class FlowStreaming {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private static Server server;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        startServer();
+
+        EXECUTOR.execute(FlowStreaming::startClient);
+
+        blockUntilShutdown();
+        EXECUTOR.shutdown();
+    }
+
+    private static void startClient() {
+        ManagedChannel channel = ManagedChannelBuilder.forTarget("localhost:50000").usePlaintext().build();
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(channel);
+
+        Flow.Publisher<StreamingResponse> publisher =
+                new FlowClientPublisher<>(StreamingRequest.getDefaultInstance(), stub::streamingMethod);
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+
+            private static final int TOTAL_RECEIVE = 20;
+
+            private int received;
+
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(StreamingResponse response) {
+                // Process on our own thread; the gRPC thread is free to return.
+                EXECUTOR.execute(() -> process(response));
+            }
+
+            @SneakyThrows
+            private void process(StreamingResponse response) {
+                System.out.println(response.getRandomId());
+                Thread.sleep(500);
+                if (++received < TOTAL_RECEIVE) {
+                    subscription.request(1);
+                } else {
+                    subscription.cancel();
+                    channel.shutdown();
+                    stopServer();
+                }
+            }
+
+            @SneakyThrows
+            @Override
+            public void onError(Throwable t) {
+                t.printStackTrace();
+                stopServer();
+            }
+
+            @SneakyThrows
+            @Override
+            public void onComplete() {
+                stopServer();
+            }
+        });
+    }
+
+    private static void startServer() throws IOException {
+        server = ServerBuilder.forPort(50000).addService(new PublisherStreamingServiceImpl()).build().start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                FlowStreaming.stopServer();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    private static void stopServer() throws InterruptedException {
+        if (server != null) {
+            server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void blockUntilShutdown() throws InterruptedException {
+        if (server != null) {
+            server.awaitTermination();
+        }
+    }
+}
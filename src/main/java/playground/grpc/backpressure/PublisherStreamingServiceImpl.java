@@ -0,0 +1,42 @@
+package playground.grpc.backpressure;
+
+import io.grpc.stub.StreamObserver;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Implementation of server streaming in which the responses come from a {@link java.util.concurrent.Flow.Publisher}.
+ * The producer is an ordinary loop that blocks when the publisher's buffer is full; the buffer drains only as
+ * fast as {@link FlowServerSubscriber} requests, which in turn is only as fast as the client reads.
+ */
+public class PublisherStreamingServiceImpl extends StreamingServiceGrpc.StreamingServiceImplBase {
+
+    private static final int TOTAL_MESSAGES = 1_000_000;
+
+    private static final int BUFFER_SIZE = 16;
+
+    private final ExecutorService producers = Executors.newCachedThreadPool();
+
+    @Override
+    public void streamingMethod(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver) {
+        SubmissionPublisher<StreamingResponse> publisher = new SubmissionPublisher<>(
+                ForkJoinPool.commonPool(), BUFFER_SIZE);
+
+        FlowServerSubscriber.subscribe(publisher, responseObserver);
+
+        producers.execute(() -> {
+            // SubmissionPublisher#submit blocks when the buffer is full. When the
+            // client cancels, the subscription is cancelled and we stop.
+            for (int i = 0; i < TOTAL_MESSAGES && publisher.hasSubscribers(); i++) {
+                publisher.submit(StreamingResponse.newBuilder().setRandomId(i).build());
+            }
+            publisher.close();
+        });
+    }
+}
@@ -0,0 +1,246 @@
+package playground.grpc.backpressure;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the messages of a pull-based source as a server-streaming response, but
+ * only while the stream is ready, which means that a slow client slows down the
+ * source rather than making the transport buffer messages without limit.
+ *
+ * Each time the stream becomes ready, we send at most maxMessagesPerCallback
+ * messages. If the stream is still ready after that, the rest is sent from a task
+ * on the supplied executor, rather than from within the onReady callback. The
+ * callback may run on a transport thread (with a direct executor, always), and a
+ * fast client would otherwise keep it busy for as long as the source lasts, while
+ * other streams wait.
+ *
+ * The source is invoked from one thread at a time, so it needn't be thread-safe. It's
+ * closed exactly once: when it runs out of messages, when it fails (the call fails
+ * with the status of the exception, which is UNKNOWN unless it's a StatusException
+ * or StatusRuntimeException), or when the client cancels.
+ *
+ * Usage, from within a service method:
+ *
+ * <pre>
+ * StreamProducer.produce(repository.findAll().iterator(), responseObserver);
+ * </pre>
+ */
+public class StreamProducer<T> {
+
+    public static final int DEFAULT_MAX_MESSAGES_PER_CALLBACK = 128;
+
+    /**
+     * Pull function that supplies the messages of the stream.
+     */
+    @FunctionalInterface
+    public interface Source<T> extends AutoCloseable {
+
+        /**
+         * Returns the next message, or null when there are no more.
+         */
+        T next() throws Exception;
+
+        /**
+         * Called when the stream stops being ready after a send, i.e., when the
+         * client or the network isn't keeping up. For example, a source that
+         * batches values can use smaller batches.
+         */
+        default void onPaused() {
+        }
+
+        @Override
+        default void close() throws Exception {
+        }
+    }
+
+    private final Source<? extends T> source;
+
+    private final ServerCallStreamObserver<T> responseObserver;
+
+    private final int maxMessagesPerCallback;
+
+    private final Executor executor;
+
+    // Number of times drain() was invoked while it was already running. Only the
+    // invocation that takes it from zero runs the loop; see drain().
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean cancelled;
+
+    // Accessed only from within the drain loop.
+    private boolean done;
+
+    /**
+     * Must be called from within the service method, because that's the only
+     * place where the handlers can be set.
+     *
+     * @param executor where to continue sending after maxMessagesPerCallback messages
+     */
+    public StreamProducer(Source<? extends T> source, StreamObserver<T> responseObserver,
+                          int maxMessagesPerCallback, Executor executor) {
+        if (maxMessagesPerCallback <= 0) {
+            throw new IllegalArgumentException("maxMessagesPerCallback must be positive: " + maxMessagesPerCallback);
+        }
+        this.source = Objects.requireNonNull(source);
+        this.responseObserver = (ServerCallStreamObserver<T>) responseObserver;
+        this.maxMessagesPerCallback = maxMessagesPerCallback;
+        this.executor = Objects.requireNonNull(executor);
+
+        // gRPC invokes the on-ready handler once the call starts, and again
+        // each time the stream becomes ready after not being ready.
+        this.responseObserver.setOnReadyHandler(this::drain);
+        this.responseObserver.setOnCancelHandler(() -> {
+            cancelled = true;
+            // Closes the source, unless we're sending, in which case the loop does it.
+            drain();
+        });
+    }
+
+    /**
+     * Sends the messages of the source, continuing on the common fork-join pool when
+     * the stream stays ready. If the source blocks (e.g., on I/O), use the
+     * constructor and supply an executor meant for blocking tasks.
+     */
+    public static <T> StreamProducer<T> produce(Source<? extends T> source, StreamObserver<T> responseObserver) {
+        return new StreamProducer<>(source, responseObserver,
+                DEFAULT_MAX_MESSAGES_PER_CALLBACK, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * If the iterator is AutoCloseable (e.g., JsonArrayCodec.ArrayIterator), it's closed at the end.
+     */
+    public static <T> StreamProducer<T> produce(Iterator<? extends T> iterator, StreamObserver<T> responseObserver) {
+        return produce(source(iterator), responseObserver);
+    }
+
+    public static <T> StreamProducer<T> produce(Spliterator<? extends T> spliterator, StreamObserver<T> responseObserver) {
+        return produce(source(spliterator), responseObserver);
+    }
+
+    public static <T> Source<T> source(Iterator<? extends T> iterator) {
+        return new Source<>() {
+            @Override
+            public T next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() throws Exception {
+                if (iterator instanceof AutoCloseable) {
+                    ((AutoCloseable) iterator).close();
+                }
+            }
+        };
+    }
+
+    public static <T> Source<T> source(Spliterator<? extends T> spliterator) {
+        return new Source<>() {
+
+            private T current;
+
+            @Override
+            public T next() {
+                current = null;
+                return spliterator.tryAdvance(value -> current = value) ? current : null;
+            }
+        };
+    }
+
+    // Runs on the gRPC callback threads and on the executor, possibly at the same
+    // time. Whoever increments the counter from zero sends; the others only make
+    // sure that it takes another look before it gives up.
+    private void drain() {
+        if (pending.getAndIncrement() == 0) {
+            drainLoop(1);
+        }
+    }
+
+    private void drainLoop(int missed) {
+        for (; ; ) {
+            if (send()) {
+                // Let other streams have a turn. The task takes over the loop as it
+                // is: we don't decrement the counter, and so until the task runs, any
+                // drain() calls only count, rather than send on their own thread.
+                int owed = missed;
+                try {
+                    executor.execute(() -> drainLoop(owed));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // The call fails, and we carry on here to release the loop.
+                    fail(e);
+                }
+            }
+
+            missed = pending.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    // Returns true if we stopped because we sent as many messages as
+    // allowed, and the stream is still ready.
+    private boolean send() {
+        if (done) {
+            return false;
+        }
+
+        int sent = 0;
+        while (!cancelled && responseObserver.isReady()) {
+            if (sent == maxMessagesPerCallback) {
+                return true;
+            }
+
+            T message;
+            try {
+                message = source.next();
+            } catch (Exception e) {
+                fail(e);
+                return false;
+            }
+
+            if (message == null) {
+                done = true;
+                close();
+                responseObserver.onCompleted();
+                return false;
+            }
+
+            responseObserver.onNext(message);
+            sent++;
+        }
+
+        if (cancelled) {
+            done = true;
+            close();
+        } else if (sent > 0) {
+            source.onPaused();
+        }
+        return false;
+    }
+
+    private void fail(Exception e) {
+        done = true;
+        close();
+        responseObserver.onError(Status.fromThrowable(e).asRuntimeException());
+    }
+
+    private void close() {
+        try {
+            source.close();
+        } catch (Exception e) {
+            // The call's outcome doesn't depend on it.
+            e.printStackTrace(System.err);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package playground.grpc.backpressure;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.netty.util.internal.PlatformDependent;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import playground.grpc.BatchedStreamingResponse;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+import playground.grpc.TransportProfile;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams the responses of StreamingService (see BackpressureStreamingServiceImpl)
+ * over Netty with each TransportProfile in turn, and reports throughput and memory:
+ *
+ * <ul>
+ *     <li>messages and bytes (serialized message size) per second;</li>
+ *     <li>bytes allocated per stream, by all threads;</li>
+ *     <li>peak heap and direct memory in use, sampled every 10 ms.</li>
+ * </ul>
+ *
+ * Client and server run in the same process, over loopback and in plaintext. On
+ * loopback the round-trip time is close to zero, and so the window size makes
+ * little difference to throughput. To see its effect, add latency, e.g.:
+ *
+ * <pre>sudo tc qdisc add dev lo root netem delay 5ms  # tc qdisc del dev lo root to undo</pre>
+ *
+ * Use --consumer-delay to simulate a slow client, which shows how much the
+ * transport buffers for each profile.
+ */
+public class StreamingThroughputHarness {
+
+    @Option(name = "--profiles", usage = "Comma-separated transport profiles")
+    String profiles = "DEFAULT,LOW_LATENCY,HIGH_THROUGHPUT";
+
+    // Replaces the flow-control window of all profiles, on both sides, to try other sizes.
+    @Option(name = "--flow-control-window", usage = "Flow-control window, in bytes")
+    int flowControlWindow = 0;
+
+    @Option(name = "--batched", usage = "Use BatchedStreamingMethod instead of StreamingMethod")
+    boolean batched;
+
+    @Option(name = "--iterations", usage = "Measured streams per profile, after one warm-up stream")
+    int iterations = 3;
+
+    @Option(name = "--consumer-delay", usage = "Time the client spends on each message, in microseconds")
+    long consumerDelay = 0;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "memory-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private final AtomicLong peakDirect = new AtomicLong();
+
+    private static class Result {
+
+        private long messages;
+
+        private long bytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        StreamingThroughputHarness harness = new StreamingThroughputHarness();
+        CmdLineParser parser = new CmdLineParser(harness);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            System.err.println("StreamingThroughputHarness [options...]");
+            parser.printUsage(System.err);
+            return;
+        }
+
+        harness.run();
+    }
+
+    private void run() throws Exception {
+        sampler.scheduleAtFixedRate(this::sample, 0, 10, TimeUnit.MILLISECONDS);
+
+        System.out.printf("%-16s %12s %10s %14s %14s %14s%n",
+                "Profile", "Messages/s", "MB/s", "Alloc MB/strm", "Peak heap MB", "Peak direct MB");
+
+        for (String name : profiles.split(",")) {
+            TransportProfile profile = TransportProfile.valueOf(name.trim());
+            run(profile);
+        }
+
+        sampler.shutdown();
+    }
+
+    private void run(TransportProfile profile) throws Exception {
+        NettyServerBuilder serverBuilder = profile.configure(
+                NettyServerBuilder.forPort(0, InsecureServerCredentials.create()));
+        // Calling the builder methods again overrides what the profile set.
+        if (flowControlWindow > 0) {
+            serverBuilder.flowControlWindow(flowControlWindow);
+        }
+
+        Server server = serverBuilder
+                .addService(new BackpressureStreamingServiceImpl())
+                .build().start();
+
+        ManagedChannel channel = null;
+        try {
+            NettyChannelBuilder channelBuilder = profile.configure(NettyChannelBuilder.forAddress(
+                    "localhost", server.getPort(), InsecureChannelCredentials.create()));
+            if (flowControlWindow > 0) {
+                channelBuilder.flowControlWindow(flowControlWindow);
+            }
+            channel = channelBuilder.build();
+            StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(channel);
+
+            // Warm-up, which also establishes the connection.
+            stream(stub);
+
+            long messages = 0;
+            long bytes = 0;
+            long allocated = 0;
+            long elapsed = 0;
+
+            System.gc();
+            peakHeap.set(0);
+            peakDirect.set(0);
+
+            for (int i = 0; i < iterations; i++) {
+                long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+                long start = System.nanoTime();
+
+                Result result = stream(stub);
+
+                elapsed += System.nanoTime() - start;
+                allocated += threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+                messages += result.messages;
+                bytes += result.bytes;
+            }
+
+            double seconds = elapsed / 1e9;
+            System.out.printf("%-16s %12.0f %10.1f %14.1f %14.1f %14.1f%n",
+                    profile,
+                    messages / seconds,
+                    bytes / seconds / 1e6,
+                    allocated / (double) iterations / 1e6,
+                    peakHeap.get() / 1e6,
+                    peakDirect.get() / 1e6);
+        } finally {
+            if (channel != null) {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private Result stream(StreamingServiceGrpc.StreamingServiceStub stub) throws Exception {
+        Result result = new Result();
+        CompletableFuture<Result> done = new CompletableFuture<>();
+
+        if (batched) {
+            stub.batchedStreamingMethod(StreamingRequest.getDefaultInstance(), new Observer<>(done, result) {
+                @Override
+                public void onNext(BatchedStreamingResponse response) {
+                    result.messages += response.getRandomIdsCount();
+                    result.bytes += response.getSerializedSize();
+                    consume();
+                }
+            });
+        } else {
+            stub.streamingMethod(StreamingRequest.getDefaultInstance(), new Observer<>(done, result) {
+                @Override
+                public void onNext(StreamingResponse response) {
+                    result.messages++;
+                    result.bytes += response.getSerializedSize();
+                    consume();
+                }
+            });
+        }
+
+        return done.get();
+    }
+
+    // Messages are delivered one at a time, and so the counters don't need to be thread-safe.
+    private abstract class Observer<RespT> implements ClientResponseObserver<StreamingRequest, RespT> {
+
+        private final CompletableFuture<Result> done;
+
+        private final Result result;
+
+        private Observer(CompletableFuture<Result> done, Result result) {
+            this.done = done;
+            this.result = result;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<StreamingRequest> requestStream) {
+        }
+
+        // Blocking the callback thread is what slows the stream down: with automatic
+        // flow control, gRPC asks for the next message only when onNext returns.
+        protected void consume() {
+            if (consumerDelay > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(consumerDelay));
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            done.complete(result);
+        }
+    }
+
+    private void sample() {
+        peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+
+        // Netty tracks its own direct buffers when it can allocate them without
+        // a cleaner; otherwise, they're counted in the JDK's direct buffer pool.
+        long direct = Math.max(PlatformDependent.usedDirectMemory(), 0);
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                direct += pool.getMemoryUsed();
+            }
+        }
+        peakDirect.accumulateAndGet(direct, Math::max);
+    }
+}
@@ -0,0 +1,101 @@
+package playground.grpc.compression;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresses responses according to a {@link CompressionPolicy}. The encoding is chosen
+ * per call, before the headers go out, and then each message is compressed only if its
+ * serialized size reaches the method's threshold. For protobuf messages the size is
+ * memoized, so checking it doesn't cost a second serialization.
+ *
+ * The client must support the chosen encoding (gzip always is; deflate must be
+ * registered, see {@link Compression#decompressorRegistry()}), otherwise gRPC
+ * silently sends the messages uncompressed.
+ */
+public class AdaptiveCompressionServerInterceptor implements ServerInterceptor {
+
+    public static class MethodStats {
+
+        private final LongAdder compressed = new LongAdder();
+
+        private final LongAdder uncompressed = new LongAdder();
+
+        public long getCompressed() {
+            return compressed.sum();
+        }
+
+        public long getUncompressed() {
+            return uncompressed.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "compressed=" + getCompressed() + ", uncompressed=" + getUncompressed();
+        }
+    }
+
+    private final CompressionPolicy policy;
+
+    private final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+    public AdaptiveCompressionServerInterceptor(CompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns how many messages were and weren't compressed, by full method name.
+     */
+    public Map<String, MethodStats> getStats() {
+        return stats;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String methodName = call.getMethodDescriptor().getFullMethodName();
+        CompressionPolicy.Rule rule = policy.getRule(methodName);
+        if (!rule.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+
+        MethodStats methodStats = stats.computeIfAbsent(methodName, name -> new MethodStats());
+
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+
+            @Override
+            public void sendHeaders(Metadata headers) {
+                // The encoding goes into the headers, so this is the last chance to set it.
+                super.setCompression(rule.getEncoding());
+                super.sendHeaders(headers);
+            }
+
+            @Override
+            public void sendMessage(RespT message) {
+                boolean compress = size(message) >= rule.getThreshold();
+                super.setMessageCompression(compress);
+                (compress ? methodStats.compressed : methodStats.uncompressed).increment();
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+
+    private static int size(Object message) {
+        if (message instanceof MessageLite) {
+            return ((MessageLite) message).getSerializedSize();
+        }
+        if (message instanceof byte[]) {
+            // E.g., when used together with ResponseCache.
+            return ((byte[]) message).length;
+        }
+        // Unknown size; assume it's worth compressing.
+        return Integer.MAX_VALUE;
+    }
+}
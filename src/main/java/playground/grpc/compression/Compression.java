@@ -0,0 +1,49 @@
+package playground.grpc.compression;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+
+import java.util.Map;
+
+/**
+ * The codecs available for message compression (gzip and deflate), wrapped to record
+ * statistics. Install the registries on the server builder (and the decompressor
+ * registry on the client, so that it advertises deflate support), then decide which
+ * messages to compress with {@link AdaptiveCompressionServerInterceptor}.
+ */
+public class Compression {
+
+    private final MeasuredCodec gzip = new MeasuredCodec(new Codec.Gzip());
+
+    private final MeasuredCodec deflate = new MeasuredCodec(new DeflateCodec());
+
+    private final CompressorRegistry compressorRegistry;
+
+    public Compression() {
+        compressorRegistry = CompressorRegistry.newEmptyInstance();
+        compressorRegistry.register(Codec.Identity.NONE);
+        compressorRegistry.register(gzip);
+        compressorRegistry.register(deflate);
+    }
+
+    public CompressorRegistry getCompressorRegistry() {
+        return compressorRegistry;
+    }
+
+    /**
+     * Returns gRPC's default decompressors (gzip and identity), plus deflate.
+     */
+    public static DecompressorRegistry decompressorRegistry() {
+        return DecompressorRegistry.getDefaultInstance().with(new DeflateCodec(), true);
+    }
+
+    /**
+     * Returns statistics keyed by message encoding.
+     */
+    public Map<String, CompressionStats> getStats() {
+        return Map.of(
+                gzip.getMessageEncoding(), gzip.getStats(),
+                deflate.getMessageEncoding(), deflate.getStats());
+    }
+}
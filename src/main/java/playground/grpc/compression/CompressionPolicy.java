@@ -0,0 +1,69 @@
+package playground.grpc.compression;
+
+import io.grpc.MethodDescriptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides, per method, which encoding to use and how large a response must be before
+ * it's worth compressing. Small messages don't compress well, if at all, and the CPU
+ * cost per message is roughly fixed, so compressing, say, a 4-byte message is a waste.
+ *
+ * <pre>
+ * CompressionPolicy policy = new CompressionPolicy(CompressionPolicy.Rule.DISABLED)
+ *         .forMethod(SomeGrpc.getListItemsMethod(), new CompressionPolicy.Rule("gzip", 1024))
+ *         .forMethod(StreamingServiceGrpc.getStreamingMethodMethod(), CompressionPolicy.Rule.DISABLED);
+ * </pre>
+ */
+public class CompressionPolicy {
+
+    public static class Rule {
+
+        public static final Rule DISABLED = new Rule(null, Integer.MAX_VALUE);
+
+        // Null for no compression.
+        private final String encoding;
+
+        // Minimum serialized size, in bytes, of the messages to compress.
+        private final int threshold;
+
+        public Rule(String encoding, int threshold) {
+            this.encoding = encoding;
+            this.threshold = threshold;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public boolean isEnabled() {
+            return encoding != null;
+        }
+    }
+
+    private final Rule defaultRule;
+
+    private final Map<String, Rule> methodRules = new ConcurrentHashMap<>();
+
+    public CompressionPolicy(Rule defaultRule) {
+        this.defaultRule = defaultRule;
+    }
+
+    public CompressionPolicy forMethod(MethodDescriptor<?, ?> method, Rule rule) {
+        return forMethod(method.getFullMethodName(), rule);
+    }
+
+    public CompressionPolicy forMethod(String fullMethodName, Rule rule) {
+        methodRules.put(fullMethodName, rule);
+        return this;
+    }
+
+    public Rule getRule(String fullMethodName) {
+        return methodRules.getOrDefault(fullMethodName, defaultRule);
+    }
+}
@@ -0,0 +1,55 @@
+package playground.grpc.compression;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals for one compressor: how much went in, how much came out, and how long it took.
+ */
+public class CompressionStats {
+
+    private final LongAdder messages = new LongAdder();
+
+    private final LongAdder uncompressedBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+
+    void record(long uncompressed, long compressed, long elapsedNanos) {
+        messages.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+        nanos.add(elapsedNanos);
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Returns compressed size divided by uncompressed size; lower is better.
+     */
+    public double getRatio() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0 ? 1 : getCompressedBytes() / (double) uncompressed;
+    }
+
+    @Override
+    public String toString() {
+        long n = getMessages();
+        return String.format("messages=%d, bytes in=%d, bytes out=%d, ratio=%.3f, ns/message=%.0f",
+                n, getUncompressedBytes(), getCompressedBytes(), getRatio(), n == 0 ? 0 : getNanos() / (double) n);
+    }
+}
@@ -0,0 +1,32 @@
+package playground.grpc.compression;
+
+import io.grpc.Codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The "deflate" message encoding, which gRPC defines as zlib (RFC 1950). Unlike gzip,
+ * it isn't built into grpc-java, and so must be registered on both ends.
+ */
+public class DeflateCodec implements Codec {
+
+    public static final String NAME = "deflate";
+
+    @Override
+    public String getMessageEncoding() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+        return new DeflaterOutputStream(os);
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+        return new InflaterInputStream(is);
+    }
+}
@@ -0,0 +1,99 @@
+package playground.grpc.compression;
+
+import io.grpc.Codec;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Wraps a codec to record compression ratio and time. Time is measured on the
+ * wall clock, around the calls into the compressor; because gRPC compresses into
+ * memory buffers, this is effectively the CPU time spent compressing.
+ */
+public class MeasuredCodec implements Codec {
+
+    private final Codec delegate;
+
+    private final CompressionStats stats = new CompressionStats();
+
+    public MeasuredCodec(Codec delegate) {
+        this.delegate = delegate;
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return delegate.getMessageEncoding();
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+        return delegate.decompress(is);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+        CountingOutputStream counted = new CountingOutputStream(os);
+        long start = System.nanoTime();
+        OutputStream compressor = delegate.compress(counted);
+        long setupNanos = System.nanoTime() - start;
+
+        return new FilterOutputStream(compressor) {
+
+            private long uncompressed;
+
+            private long elapsed = setupNanos;
+
+            @Override
+            public void write(int b) throws IOException {
+                long start = System.nanoTime();
+                out.write(b);
+                elapsed += System.nanoTime() - start;
+                uncompressed++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                out.write(b, off, len);
+                elapsed += System.nanoTime() - start;
+                uncompressed += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Closing flushes the compressor, so it's part of the cost.
+                long start = System.nanoTime();
+                out.close();
+                elapsed += System.nanoTime() - start;
+                stats.record(uncompressed, counted.count, elapsed);
+            }
+        };
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
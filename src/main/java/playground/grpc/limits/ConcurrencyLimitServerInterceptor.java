@@ -0,0 +1,135 @@
+package playground.grpc.limits;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds load by limiting the number of calls in flight; calls over the limit fail
+ * straight away with RESOURCE_EXHAUSTED. Without a limit, an overloaded server
+ * accepts everything and queues it, latency grows until calls start missing their
+ * deadlines, and then most of the work is wasted on calls nobody waits for. With
+ * a limit, the calls we accept complete in good time, and the rest fail quickly,
+ * which gives the clients the chance to go elsewhere or back off.
+ *
+ * The limit comes from GradientConcurrencyLimit, which adapts it to the observed
+ * latency. Rejections include the grpc-retry-pushback-ms trailer, which clients
+ * with a retry policy (see ServiceConfigBuilder) use as the delay before their next
+ * attempt, instead of their own backoff.
+ *
+ * Note that the interceptor runs only once the call is taken from the executor
+ * queue. Rejections thus keep the queue short, but they're not free.
+ */
+public class ConcurrencyLimitServerInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final ServerCall.Listener<?> NOOP_LISTENER = new ServerCall.Listener<>() {
+    };
+
+    private final GradientConcurrencyLimit limit;
+
+    private final String pushback;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param pushback how long rejected clients should wait before retrying; null to
+     *                 tell them not to retry at all
+     */
+    public ConcurrencyLimitServerInterceptor(GradientConcurrencyLimit limit, Duration pushback) {
+        this.limit = limit;
+        // A negative value means no retry.
+        this.pushback = pushback != null ? String.valueOf(pushback.toMillis()) : "-1";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        int current = tryAcquire();
+        if (current < 0) {
+            rejected.increment();
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_KEY, pushback);
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Concurrency limit exceeded"), trailers);
+            return (ServerCall.Listener<ReqT>) NOOP_LISTENER;
+        }
+
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+
+        // Calls end either with close(), or with a cancellation (e.g., because the
+        // deadline expired), in which case there may be no close() at all. Either way
+        // we record how long the call took; slow cancelled calls are a sign of overload.
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                limit.onSample(System.nanoTime() - start, current);
+            }
+        };
+
+        ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                release.run();
+                super.close(status, trailers);
+            }
+        };
+
+        try {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(limitedCall, headers)) {
+                @Override
+                public void onCancel() {
+                    release.run();
+                    super.onCancel();
+                }
+
+                @Override
+                public void onComplete() {
+                    release.run();
+                    super.onComplete();
+                }
+            };
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    // Returns the number of calls in flight, including this one, or -1 if over the limit.
+    private int tryAcquire() {
+        for (; ; ) {
+            int current = inFlight.get();
+            if (current >= limit.getLimit()) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
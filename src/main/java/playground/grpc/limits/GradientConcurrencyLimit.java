@@ -0,0 +1,96 @@
+package playground.grpc.limits;
+
+/**
+ * Concurrency limit that adapts to the observed latency, based on the gradient
+ * algorithm from Netflix's concurrency-limits library. The idea is that, as long as
+ * the server isn't overloaded, latency doesn't depend much on concurrency. Once it
+ * is overloaded, additional calls only wait in queues, and latency goes up.
+ *
+ * We keep two latency averages: a short-term one, which reflects the current state,
+ * and a long-term one, which approximates latency without queueing. Their ratio (the
+ * gradient) is 1 when there's no queueing, and drops below 1 as latency grows, which
+ * shrinks the limit. When latency is stable, we grow the limit by a small amount
+ * (roughly the square root of the limit) to probe for more capacity.
+ *
+ * Instances are thread-safe; updates are synchronized, but they're cheap.
+ */
+public class GradientConcurrencyLimit {
+
+    // Latency may be this much higher than the long-term average before we react.
+    private static final double TOLERANCE = 1.5;
+
+    // How much each update moves the limit towards the computed value.
+    private static final double SMOOTHING = 0.2;
+
+    // Number of samples in the short- and long-term averages.
+    private static final int SHORT_WINDOW = 10;
+
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private volatile int limit;
+
+    private double estimatedLimit;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if ((minLimit < 1) || (initialLimit < minLimit) || (maxLimit < initialLimit)) {
+            throw new IllegalArgumentException("Expected 1 <= min <= initial <= max, got min=" + minLimit
+                    + ", initial=" + initialLimit + ", max=" + maxLimit);
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param rttNanos how long the call took
+     * @param inFlight the number of calls in flight when this one started
+     */
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt += (shortRtt - longRtt) / LONG_WINDOW;
+
+        // After a long period of overload the long-term average drifts up, and we'd
+        // take a long time to notice that latency is back to normal. Speed that up.
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // If we're not using most of the limit, the latency says nothing about
+        // whether we could handle more; don't grow the limit without evidence.
+        if (inFlight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "limit=" + limit;
+    }
+}
@@ -0,0 +1,192 @@
+package playground.grpc.loadbalancing;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves targets that point to a file with backend addresses, one per line
+ * (blank lines and lines starting with # are ignored), for example:
+ *
+ * <pre>
+ * file:///etc/hello/backends.txt
+ * </pre>
+ *
+ * The file is checked periodically, and the channel is updated when the addresses
+ * change, which means that backends can be added and removed without a restart.
+ * Once we have a list of addresses, failures to read the file are ignored, so that
+ * a partially written file doesn't take all backends away. To avoid that altogether,
+ * write a temporary file and rename it.
+ *
+ * As with StaticNameResolverProvider, the URI authority, if any, becomes the channel
+ * authority; the default is localhost.
+ */
+public class FileNameResolverProvider extends NameResolverProvider {
+
+    public static final String SCHEME = "file";
+
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(5);
+
+    private final String scheme;
+
+    private final Function<String, SocketAddress> addressParser;
+
+    private final Class<? extends SocketAddress> addressType;
+
+    private final Duration pollInterval;
+
+    public FileNameResolverProvider() {
+        this(SCHEME, StaticNameResolverProvider::parseInetAddress, InetSocketAddress.class, DEFAULT_POLL_INTERVAL);
+    }
+
+    public FileNameResolverProvider(String scheme, Function<String, SocketAddress> addressParser,
+                                    Class<? extends SocketAddress> addressType, Duration pollInterval) {
+        this.scheme = scheme;
+        this.addressParser = addressParser;
+        this.addressType = addressType;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!scheme.equals(targetUri.getScheme())) {
+            return null;
+        }
+
+        String authority = targetUri.getAuthority() != null
+                ? targetUri.getAuthority()
+                : StaticNameResolverProvider.DEFAULT_AUTHORITY;
+
+        return new FileNameResolver(Paths.get(targetUri.getPath()), authority,
+                args.getSynchronizationContext(), args.getScheduledExecutorService());
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return scheme;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    // Below DNS, for the same reason as StaticNameResolverProvider.
+    @Override
+    protected int priority() {
+        return 4;
+    }
+
+    @Override
+    protected Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+        return List.of(addressType);
+    }
+
+    // All methods, including the scheduled polls, run in the synchronization context.
+    private class FileNameResolver extends NameResolver {
+
+        private final Path path;
+
+        private final String authority;
+
+        private final SynchronizationContext syncContext;
+
+        private final ScheduledExecutorService scheduler;
+
+        private Listener2 listener;
+
+        private SynchronizationContext.ScheduledHandle nextPoll;
+
+        private List<String> lastEntries;
+
+        private boolean shutdown;
+
+        private FileNameResolver(Path path, String authority, SynchronizationContext syncContext,
+                                 ScheduledExecutorService scheduler) {
+            this.path = path;
+            this.authority = authority;
+            this.syncContext = syncContext;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public String getServiceAuthority() {
+            return authority;
+        }
+
+        @Override
+        public void start(Listener2 listener) {
+            this.listener = listener;
+            resolve();
+        }
+
+        @Override
+        public void refresh() {
+            if (nextPoll != null) {
+                nextPoll.cancel();
+            }
+            resolve();
+        }
+
+        private void resolve() {
+            if (shutdown) {
+                return;
+            }
+
+            try {
+                // The file is small, so we don't mind reading it in the synchronization context.
+                List<String> entries = Files.readAllLines(path).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .collect(Collectors.toList());
+
+                if (entries.isEmpty()) {
+                    throw new IllegalArgumentException("No addresses in " + path);
+                }
+
+                if (!entries.equals(lastEntries)) {
+                    List<EquivalentAddressGroup> addresses = entries.stream()
+                            .map(entry -> new EquivalentAddressGroup(addressParser.apply(entry)))
+                            .collect(Collectors.toList());
+                    lastEntries = entries;
+                    listener.onResult(ResolutionResult.newBuilder()
+                            .setAddresses(addresses)
+                            .build());
+                }
+            } catch (IOException | RuntimeException e) {
+                if (lastEntries == null) {
+                    listener.onError(Status.UNAVAILABLE
+                            .withDescription("Failed to read addresses from " + path)
+                            .withCause(e));
+                }
+            }
+
+            nextPoll = syncContext.schedule(this::resolve, pollInterval.toNanos(), TimeUnit.NANOSECONDS, scheduler);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            if (nextPoll != null) {
+                nextPoll.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package playground.grpc.loadbalancing;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends each call to the backend with the fewest calls in flight. Unlike round robin,
+ * this adapts to backends that are slower than others (or temporarily stalled): they
+ * accumulate outstanding calls, and so receive fewer new ones.
+ *
+ * The counts are local to the channel, which is fine, because all we want is to
+ * avoid piling calls onto the backends that are slow for us. Ties are broken
+ * randomly, so that idle backends share the load. We look at all backends on
+ * every pick, which is cheap for the handful of backends we expect; with many
+ * more, it would be better to pick two at random and use the less loaded one.
+ *
+ * Select with ManagedChannelBuilder#defaultLoadBalancingPolicy, using POLICY_NAME.
+ */
+public class LeastOutstandingRequestsLoadBalancer extends LoadBalancer {
+
+    public static final String POLICY_NAME = "least_outstanding_requests";
+
+    private static final class Backend {
+
+        private final Subchannel subchannel;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Counts the calls that are actually started on the subchannel; a pick
+        // alone doesn't mean a call is made, e.g., if the subchannel just failed.
+        private final ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                outstanding.incrementAndGet();
+                return new ClientStreamTracer() {
+                    @Override
+                    public void streamClosed(Status status) {
+                        outstanding.decrementAndGet();
+                    }
+                };
+            }
+        };
+
+        private ConnectivityStateInfo state = ConnectivityStateInfo.forNonError(ConnectivityState.IDLE);
+
+        private Backend(Subchannel subchannel) {
+            this.subchannel = subchannel;
+        }
+    }
+
+    private final Helper helper;
+
+    // Keyed by addresses without attributes. Accessed only from the synchronization context.
+    private final Map<EquivalentAddressGroup, Backend> backends = new LinkedHashMap<>();
+
+    public LeastOutstandingRequestsLoadBalancer(Helper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public Status acceptResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        List<EquivalentAddressGroup> groups = resolvedAddresses.getAddresses();
+        if (groups.isEmpty()) {
+            Status status = Status.UNAVAILABLE.withDescription("Name resolver returned no addresses");
+            handleNameResolutionError(status);
+            return status;
+        }
+
+        Set<EquivalentAddressGroup> keys = new HashSet<>();
+        for (EquivalentAddressGroup group : groups) {
+            EquivalentAddressGroup key = new EquivalentAddressGroup(group.getAddresses());
+            keys.add(key);
+
+            if (!backends.containsKey(key)) {
+                Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+                        .setAddresses(group)
+                        .build());
+                Backend backend = new Backend(subchannel);
+                backends.put(key, backend);
+                subchannel.start(state -> onStateChange(backend, state));
+                subchannel.requestConnection();
+            }
+        }
+
+        // Backends that are no longer in the list.
+        for (Iterator<Map.Entry<EquivalentAddressGroup, Backend>> it = backends.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<EquivalentAddressGroup, Backend> entry = it.next();
+            if (!keys.contains(entry.getKey())) {
+                entry.getValue().subchannel.shutdown();
+                it.remove();
+            }
+        }
+
+        updateBalancingState(null);
+        return Status.OK;
+    }
+
+    private void onStateChange(Backend backend, ConnectivityStateInfo state) {
+        if (!backends.containsValue(backend) || (state.getState() == ConnectivityState.SHUTDOWN)) {
+            return;
+        }
+
+        // Subchannels go idle when their connection is closed (e.g., after an idle
+        // timeout, or when the server goes away). We want them connected.
+        if (state.getState() == ConnectivityState.IDLE) {
+            backend.subchannel.requestConnection();
+        }
+
+        backend.state = state;
+        updateBalancingState(null);
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        // Keep using the backends we have, if any are working.
+        updateBalancingState(error);
+    }
+
+    private void updateBalancingState(Status resolutionError) {
+        List<Backend> ready = new ArrayList<>();
+        boolean connecting = false;
+        Status failure = resolutionError;
+
+        for (Backend backend : backends.values()) {
+            switch (backend.state.getState()) {
+                case READY:
+                    ready.add(backend);
+                    break;
+                case IDLE:
+                case CONNECTING:
+                    connecting = true;
+                    break;
+                case TRANSIENT_FAILURE:
+                    if (failure == null) {
+                        failure = backend.state.getStatus();
+                    }
+                    break;
+                default:
+            }
+        }
+
+        if (!ready.isEmpty()) {
+            helper.updateBalancingState(ConnectivityState.READY, new LeastOutstandingPicker(ready));
+        } else if (connecting) {
+            helper.updateBalancingState(ConnectivityState.CONNECTING, new FixedPicker(PickResult.withNoResult()));
+        } else if (failure != null) {
+            helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(failure)));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Backend backend : backends.values()) {
+            backend.subchannel.shutdown();
+        }
+        backends.clear();
+    }
+
+    // Pickers are invoked concurrently from the application threads.
+    private static final class LeastOutstandingPicker extends SubchannelPicker {
+
+        private final List<Backend> ready;
+
+        private LeastOutstandingPicker(List<Backend> ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            int size = ready.size();
+            int start = ThreadLocalRandom.current().nextInt(size);
+
+            Backend best = null;
+            int bestOutstanding = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                Backend backend = ready.get((start + i) % size);
+                int outstanding = backend.outstanding.get();
+                if (outstanding < bestOutstanding) {
+                    best = backend;
+                    bestOutstanding = outstanding;
+                }
+            }
+
+            return PickResult.withSubchannel(best.subchannel, best.tracerFactory);
+        }
+    }
+
+    private static final class FixedPicker extends SubchannelPicker {
+
+        private final PickResult result;
+
+        private FixedPicker(PickResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
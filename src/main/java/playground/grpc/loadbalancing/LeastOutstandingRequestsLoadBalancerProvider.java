@@ -0,0 +1,30 @@
+package playground.grpc.loadbalancing;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+
+/**
+ * Registered via META-INF/services, which makes the policy available to all channels.
+ */
+public class LeastOutstandingRequestsLoadBalancerProvider extends LoadBalancerProvider {
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return LeastOutstandingRequestsLoadBalancer.POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return new LeastOutstandingRequestsLoadBalancer(helper);
+    }
+}
@@ -0,0 +1,140 @@
+package playground.grpc.loadbalancing;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves targets that list the backend addresses directly, for example:
+ *
+ * <pre>
+ * static:///localhost:50051,localhost:50052,localhost:50053
+ * </pre>
+ *
+ * Each address becomes a separate backend for the load balancing policy. The URI
+ * authority, if present, is used as the channel authority, which TLS uses to verify
+ * the server certificate (e.g., static://example.com/10.0.0.1:443,10.0.0.2:443);
+ * otherwise we use localhost, which is what our test certificate is valid for.
+ *
+ * The provider is registered via META-INF/services. Other instances, for example
+ * with in-process addresses, can be registered with NameResolverRegistry.
+ */
+public class StaticNameResolverProvider extends NameResolverProvider {
+
+    public static final String SCHEME = "static";
+
+    static final String DEFAULT_AUTHORITY = "localhost";
+
+    private final String scheme;
+
+    private final Function<String, SocketAddress> addressParser;
+
+    private final Class<? extends SocketAddress> addressType;
+
+    public StaticNameResolverProvider() {
+        this(SCHEME, StaticNameResolverProvider::parseInetAddress, InetSocketAddress.class);
+    }
+
+    /**
+     * @param addressType the type of the addresses created by the parser; the channel
+     *                    checks that its transport supports it
+     */
+    public StaticNameResolverProvider(String scheme, Function<String, SocketAddress> addressParser,
+                                      Class<? extends SocketAddress> addressType) {
+        this.scheme = scheme;
+        this.addressParser = addressParser;
+        this.addressType = addressType;
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!scheme.equals(targetUri.getScheme())) {
+            return null;
+        }
+
+        // The path starts with a slash.
+        String path = targetUri.getPath();
+        List<EquivalentAddressGroup> addresses = Arrays.stream(path.substring(1).split(","))
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .map(address -> new EquivalentAddressGroup(addressParser.apply(address)))
+                .collect(Collectors.toList());
+
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No addresses in target: " + targetUri);
+        }
+
+        String authority = targetUri.getAuthority() != null ? targetUri.getAuthority() : DEFAULT_AUTHORITY;
+
+        return new NameResolver() {
+            @Override
+            public String getServiceAuthority() {
+                return authority;
+            }
+
+            @Override
+            public void start(Listener2 listener) {
+                listener.onResult(ResolutionResult.newBuilder()
+                        .setAddresses(addresses)
+                        .build());
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return scheme;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    // Below DNS (5): the provider with the highest priority supplies the default
+    // scheme, which is used for targets without one (e.g., localhost:50051). We only
+    // want to handle targets that ask for us explicitly.
+    @Override
+    protected int priority() {
+        return 4;
+    }
+
+    @Override
+    protected Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+        return List.of(addressType);
+    }
+
+    /**
+     * Parses host:port, or [host]:port for IPv6. Host names are resolved straight away.
+     */
+    public static InetSocketAddress parseInetAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Address must be host:port: " + address);
+        }
+
+        String host = address.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+
+        try {
+            return new InetSocketAddress(host, Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port: " + address, e);
+        }
+    }
+}
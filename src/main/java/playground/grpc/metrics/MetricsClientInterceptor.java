@@ -0,0 +1,67 @@
+package playground.grpc.metrics;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.opentelemetry.api.OpenTelemetry;
+
+/**
+ * Records per-method client metrics; see {@link RpcMetrics}. Latency is measured
+ * from the start of the call until the client receives the final status.
+ *
+ * Recording allocates nothing, as the attributes are precomputed per method and status
+ * code, but each call still costs two objects: the forwarding call and listener.
+ */
+public class MetricsClientInterceptor implements ClientInterceptor {
+
+    public static final String INSTRUMENTATION_NAME = "playground.grpc.client";
+
+    private final RpcMetrics metrics;
+
+    public MetricsClientInterceptor(OpenTelemetry openTelemetry) {
+        this.metrics = new RpcMetrics(openTelemetry.getMeter(INSTRUMENTATION_NAME), "rpc.client");
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        RpcMetrics.MethodMetrics mm = metrics.forMethod(method);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+
+            private long startNanos;
+
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                startNanos = System.nanoTime();
+                mm.started();
+
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        mm.received.increment();
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        // gRPC guarantees that onClose is invoked exactly once per started call.
+                        mm.finished(status.getCode(), startNanos);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                mm.sent.increment();
+                super.sendMessage(message);
+            }
+        };
+    }
+}
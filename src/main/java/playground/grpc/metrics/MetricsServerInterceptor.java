@@ -0,0 +1,91 @@
+package playground.grpc.metrics;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.opentelemetry.api.OpenTelemetry;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Records per-method server metrics; see {@link RpcMetrics}. Install as the outermost
+ * interceptor (i.e., last in the list given to ServerInterceptors#intercept) so that
+ * calls rejected by other interceptors, such as authentication, are counted too.
+ *
+ * Recording allocates nothing, as the attributes are precomputed per method and status
+ * code, but each call still costs two objects: the forwarding call and listener.
+ */
+public class MetricsServerInterceptor implements ServerInterceptor {
+
+    public static final String INSTRUMENTATION_NAME = "playground.grpc.server";
+
+    private final RpcMetrics metrics;
+
+    public MetricsServerInterceptor(OpenTelemetry openTelemetry) {
+        this.metrics = new RpcMetrics(openTelemetry.getMeter(INSTRUMENTATION_NAME), "rpc.server");
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        RpcMetrics.MethodMetrics mm = metrics.forMethod(call.getMethodDescriptor());
+        MonitoredCall<ReqT, RespT> monitoredCall = new MonitoredCall<>(call, mm);
+        mm.started();
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(monitoredCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                mm.received.increment();
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                monitoredCall.finish(Status.Code.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    // Also holds the state of the call, so that the listener above is the only other
+    // object we allocate for it.
+    private static class MonitoredCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<MonitoredCall> FINISHED =
+                AtomicIntegerFieldUpdater.newUpdater(MonitoredCall.class, "finished");
+
+        private final RpcMetrics.MethodMetrics mm;
+
+        private final long startNanos = System.nanoTime();
+
+        // A call ends either with close() or, if the client goes away, with onCancel().
+        private volatile int finished;
+
+        private MonitoredCall(ServerCall<ReqT, RespT> call, RpcMetrics.MethodMetrics mm) {
+            super(call);
+            this.mm = mm;
+        }
+
+        private void finish(Status.Code code) {
+            if (FINISHED.compareAndSet(this, 0, 1)) {
+                mm.finished(code, startNanos);
+            }
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            mm.sent.increment();
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            finish(status.getCode());
+            super.close(status, trailers);
+        }
+    }
+}
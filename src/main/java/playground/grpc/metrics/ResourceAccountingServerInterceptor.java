@@ -0,0 +1,179 @@
+package playground.grpc.metrics;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many bytes each call allocates, and how much CPU time it uses, per method.
+ *
+ * Service code runs inside the listener callbacks (for unary calls, the handler runs in
+ * onHalfClose), so we take a reading of the current thread's counters before and after
+ * each callback. Callbacks of the same call may run on different threads, which is why
+ * we add up the differences rather than compare the first and the last reading. Work
+ * that the service hands off to other threads is not included.
+ *
+ * Reading the counters is cheap, but not free (a few hundred nanoseconds per callback);
+ * the JVM may also have thread allocation accounting disabled, in which case we don't
+ * measure allocation. This interceptor is intended mainly for profiling and for tests
+ * that guard against allocation regressions.
+ */
+public class ResourceAccountingServerInterceptor implements ServerInterceptor {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static class ResourceStats {
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private final LongAdder cpuNanos = new LongAdder();
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos.sum();
+        }
+
+        public double getAllocatedBytesPerCall() {
+            long n = getCalls();
+            return n == 0 ? 0 : getAllocatedBytes() / (double) n;
+        }
+
+        public double getCpuNanosPerCall() {
+            long n = getCalls();
+            return n == 0 ? 0 : getCpuNanos() / (double) n;
+        }
+
+        public void reset() {
+            calls.reset();
+            allocatedBytes.reset();
+            cpuNanos.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, bytes/call=%.0f, cpu ns/call=%.0f",
+                    getCalls(), getAllocatedBytesPerCall(), getCpuNanosPerCall());
+        }
+    }
+
+    private final ConcurrentMap<String, ResourceStats> stats = new ConcurrentHashMap<>();
+
+    private final boolean allocationSupported;
+
+    private final boolean cpuSupported;
+
+    public ResourceAccountingServerInterceptor() {
+        this.allocationSupported = THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled();
+        this.cpuSupported = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    public boolean isCpuSupported() {
+        return cpuSupported;
+    }
+
+    /**
+     * Returns stats keyed by full method name (e.g., playground.grpc.Hello/SayHello).
+     */
+    public Map<String, ResourceStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public ResourceStats getStats(String fullMethodName) {
+        return stats.computeIfAbsent(fullMethodName, name -> new ResourceStats());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        ResourceStats methodStats = getStats(call.getMethodDescriptor().getFullMethodName());
+
+        // Interceptors and the handler's startCall run here too, and count towards the call.
+        long bytes = allocatedBytes();
+        long cpu = cpuNanos();
+        ServerCall.Listener<ReqT> delegate = next.startCall(call, headers);
+        long startBytes = allocatedBytes() - bytes;
+        long startCpu = cpuNanos() - cpu;
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(delegate) {
+
+            // Callbacks for a call are never concurrent, so we don't need atomics.
+            private long callBytes = startBytes;
+
+            private long callCpu = startCpu;
+
+            private void measure(Runnable callback) {
+                long bytes = allocatedBytes();
+                long cpu = cpuNanos();
+                try {
+                    callback.run();
+                } finally {
+                    callBytes += allocatedBytes() - bytes;
+                    callCpu += cpuNanos() - cpu;
+                }
+            }
+
+            private void record() {
+                methodStats.allocatedBytes.add(callBytes);
+                methodStats.cpuNanos.add(callCpu);
+                methodStats.calls.increment();
+            }
+
+            @Override
+            public void onMessage(ReqT message) {
+                measure(() -> super.onMessage(message));
+            }
+
+            @Override
+            public void onHalfClose() {
+                measure(super::onHalfClose);
+            }
+
+            @Override
+            public void onReady() {
+                measure(super::onReady);
+            }
+
+            @Override
+            public void onCancel() {
+                measure(super::onCancel);
+                record();
+            }
+
+            @Override
+            public void onComplete() {
+                measure(super::onComplete);
+                record();
+            }
+        };
+    }
+
+    private long allocatedBytes() {
+        return allocationSupported ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private long cpuNanos() {
+        return cpuSupported ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+}
@@ -0,0 +1,135 @@
+package playground.grpc.metrics;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.exporter.logging.LoggingMetricExporter;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-method RPC metrics, shared by {@link MetricsServerInterceptor} and {@link MetricsClientInterceptor}.
+ *
+ * The hot path is kept cheap: counters are striped (LongAdder), so concurrent calls
+ * don't contend on a single memory location, and they're read only when the
+ * MeterProvider collects, via asynchronous instruments. Attributes are created once
+ * per method (and status code), rather than on every call. Latency goes into an
+ * OpenTelemetry histogram, with bucket boundaries fine enough to see the tail.
+ *
+ * Recorded metrics, where prefix is rpc.server or rpc.client:
+ *
+ * <ul>
+ *     <li>prefix.duration: call latency in milliseconds, by method and status code</li>
+ *     <li>prefix.active_requests: calls in flight, by method</li>
+ *     <li>prefix.messages_sent and prefix.messages_received, by method</li>
+ * </ul>
+ */
+public class RpcMetrics {
+
+    static final AttributeKey<String> RPC_SERVICE = AttributeKey.stringKey("rpc.service");
+
+    static final AttributeKey<String> RPC_METHOD = AttributeKey.stringKey("rpc.method");
+
+    static final AttributeKey<Long> RPC_GRPC_STATUS_CODE = AttributeKey.longKey("rpc.grpc.status_code");
+
+    private static final List<Double> LATENCY_BUCKETS_MS = List.of(
+            0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0, 100.0, 250.0, 500.0, 1000.0, 2500.0, 5000.0, 10000.0);
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private final DoubleHistogram duration;
+
+    RpcMetrics(Meter meter, String prefix) {
+        this.duration = meter.histogramBuilder(prefix + ".duration")
+                .setUnit("ms")
+                .setDescription("Duration of RPC calls")
+                .setExplicitBucketBoundariesAdvice(LATENCY_BUCKETS_MS)
+                .build();
+
+        meter.upDownCounterBuilder(prefix + ".active_requests")
+                .setDescription("Number of RPC calls in flight")
+                .buildWithCallback(m -> methods.values()
+                        .forEach(mm -> m.record(mm.inFlight.sum(), mm.attributes)));
+
+        meter.counterBuilder(prefix + ".messages_sent")
+                .setDescription("Number of messages sent")
+                .buildWithCallback(m -> methods.values()
+                        .forEach(mm -> m.record(mm.sent.sum(), mm.attributes)));
+
+        meter.counterBuilder(prefix + ".messages_received")
+                .setDescription("Number of messages received")
+                .buildWithCallback(m -> methods.values()
+                        .forEach(mm -> m.record(mm.received.sum(), mm.attributes)));
+    }
+
+    MethodMetrics forMethod(MethodDescriptor<?, ?> method) {
+        // The fast path, get(), doesn't lock; computeIfAbsent() may.
+        MethodMetrics mm = methods.get(method.getFullMethodName());
+        if (mm == null) {
+            mm = methods.computeIfAbsent(method.getFullMethodName(), name -> new MethodMetrics(method));
+        }
+        return mm;
+    }
+
+    /**
+     * Creates a MeterProvider that periodically logs all metrics (via java.util.logging),
+     * which is handy for local runs. In production, use an OTLP exporter instead.
+     */
+    public static SdkMeterProvider loggingMeterProvider(Duration interval) {
+        return SdkMeterProvider.builder()
+                .registerMetricReader(PeriodicMetricReader.builder(LoggingMetricExporter.create())
+                        .setInterval(interval)
+                        .build())
+                .build();
+    }
+
+    class MethodMetrics {
+
+        final LongAdder inFlight = new LongAdder();
+
+        final LongAdder sent = new LongAdder();
+
+        final LongAdder received = new LongAdder();
+
+        final Attributes attributes;
+
+        // Indexed by Status.Code#ordinal.
+        private final Attributes[] statusAttributes;
+
+        private MethodMetrics(MethodDescriptor<?, ?> method) {
+            String service = method.getServiceName();
+            String bareMethodName = method.getBareMethodName();
+            this.attributes = Attributes.of(
+                    RPC_SERVICE, service != null ? service : "",
+                    RPC_METHOD, bareMethodName != null ? bareMethodName : method.getFullMethodName());
+
+            Status.Code[] codes = Status.Code.values();
+            this.statusAttributes = new Attributes[codes.length];
+            for (Status.Code code : codes) {
+                statusAttributes[code.ordinal()] = attributes.toBuilder()
+                        .put(RPC_GRPC_STATUS_CODE, (long) code.value())
+                        .build();
+            }
+        }
+
+        void started() {
+            inFlight.increment();
+        }
+
+        void finished(Status.Code code, long startNanos) {
+            inFlight.decrement();
+            duration.record((System.nanoTime() - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                    statusAttributes[code.ordinal()]);
+        }
+    }
+}
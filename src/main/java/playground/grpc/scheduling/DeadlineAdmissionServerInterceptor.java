@@ -0,0 +1,184 @@
+package playground.grpc.scheduling;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects calls that are unlikely to complete before their deadline, so that we don't
+ * spend time on work whose results nobody will wait for. For each method, we keep an
+ * estimate of how long calls take (from the moment they're picked up to the moment
+ * they're closed), and reject calls whose remaining time is shorter than that. Such
+ * calls fail with DEADLINE_EXCEEDED, which is what the client would see anyway, only
+ * later.
+ *
+ * The estimate is a moving average. To keep an occasional very slow call from
+ * distorting it, each sample is capped at a multiple of the current estimate. Because
+ * rejected calls don't produce samples, every rejection also lowers the estimate
+ * slightly; otherwise, an estimate that's too high could reject everything forever.
+ *
+ * When installed with callExecutor(), calls run on an EarliestDeadlineFirstExecutor,
+ * and we also measure how long they wait in its queue:
+ *
+ * <pre>
+ * DeadlineAdmissionServerInterceptor admission = new DeadlineAdmissionServerInterceptor();
+ * serverBuilder
+ *         .callExecutor(admission.callExecutor(new EarliestDeadlineFirstExecutor(threads)))
+ *         .addService(ServerInterceptors.intercept(service, admission));
+ * </pre>
+ */
+public class DeadlineAdmissionServerInterceptor implements ServerInterceptor {
+
+    // Weight of each new sample in the service time estimate.
+    private static final double ALPHA = 0.1;
+
+    // Samples are capped at this multiple of the current estimate.
+    private static final double MAX_SAMPLE_RATIO = 2;
+
+    // Applied to the estimate on every rejection.
+    private static final double REJECTION_DECAY = 0.99;
+
+    // Used to pass the arrival time from the executor supplier to the interceptor.
+    private static final Metadata.Key<String> ARRIVAL_KEY =
+            Metadata.Key.of("playground-arrival-nanos", Metadata.ASCII_STRING_MARSHALLER);
+
+    public static class MethodStats {
+
+        private final LongAdder admitted = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private final LongAdder queued = new LongAdder();
+
+        private final LongAdder queueNanos = new LongAdder();
+
+        private double serviceNanos;
+
+        public long getAdmitted() {
+            return admitted.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        /**
+         * Returns the average time calls spent in the executor queue; requires callExecutor().
+         */
+        public double getAverageQueueNanos() {
+            long n = queued.sum();
+            return n == 0 ? 0 : queueNanos.sum() / (double) n;
+        }
+
+        public synchronized long getServiceNanosEstimate() {
+            return (long) serviceNanos;
+        }
+
+        private synchronized void recordServiceTime(long nanos) {
+            if (serviceNanos == 0) {
+                serviceNanos = nanos;
+            } else {
+                serviceNanos += (Math.min(nanos, serviceNanos * MAX_SAMPLE_RATIO) - serviceNanos) * ALPHA;
+            }
+        }
+
+        private synchronized void recordRejection() {
+            rejected.increment();
+            serviceNanos *= REJECTION_DECAY;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("admitted=%d, rejected=%d, queue ms=%.3f, service ms=%.3f",
+                    getAdmitted(), getRejected(), getAverageQueueNanos() / 1e6, getServiceNanosEstimate() / 1e6);
+        }
+    }
+
+    private final ConcurrentMap<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+    private volatile boolean trackingArrivals;
+
+    /**
+     * Returns a supplier for ServerBuilder#callExecutor, which runs each call on the
+     * supplied executor with the call's deadline, and records when it arrived.
+     */
+    public ServerCallExecutorSupplier callExecutor(EarliestDeadlineFirstExecutor executor) {
+        trackingArrivals = true;
+
+        return new ServerCallExecutorSupplier() {
+            @Override
+            public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+                // Don't trust a value sent by the client.
+                headers.discardAll(ARRIVAL_KEY);
+                headers.put(ARRIVAL_KEY, Long.toString(System.nanoTime()));
+
+                // We're invoked in the context of the call.
+                Deadline deadline = Context.current().getDeadline();
+                long deadlineNanos = deadline != null
+                        ? System.nanoTime() + deadline.timeRemaining(TimeUnit.NANOSECONDS)
+                        : EarliestDeadlineFirstExecutor.NO_DEADLINE;
+
+                return task -> executor.execute(task, deadlineNanos);
+            }
+        };
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        long start = System.nanoTime();
+        MethodStats methodStats = getStats(call.getMethodDescriptor().getFullMethodName());
+
+        String arrival = headers.get(ARRIVAL_KEY);
+        headers.discardAll(ARRIVAL_KEY);
+        if (trackingArrivals && (arrival != null)) {
+            methodStats.queued.increment();
+            methodStats.queueNanos.add(start - Long.parseLong(arrival));
+        }
+
+        Deadline deadline = Context.current().getDeadline();
+        if (deadline != null) {
+            long remaining = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+            long expected = methodStats.getServiceNanosEstimate();
+            if (remaining < expected) {
+                methodStats.recordRejection();
+                call.close(Status.DEADLINE_EXCEEDED.withDescription(String.format(
+                        "Insufficient time to process the call: %.3f ms remaining, %.3f ms expected",
+                        remaining / 1e6, expected / 1e6)), new Metadata());
+                return new ServerCall.Listener<>() {
+                };
+            }
+        }
+
+        methodStats.admitted.increment();
+
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                methodStats.recordServiceTime(System.nanoTime() - start);
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+
+    public MethodStats getStats(String fullMethodName) {
+        return stats.computeIfAbsent(fullMethodName, name -> new MethodStats());
+    }
+
+    public Map<String, MethodStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+}
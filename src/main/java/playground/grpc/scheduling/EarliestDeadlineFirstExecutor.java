@@ -0,0 +1,95 @@
+package playground.grpc.scheduling;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size thread pool that runs queued tasks in order of their deadlines, earliest
+ * first, rather than in order of arrival. When the server is busy, this favours the
+ * calls that are about to run out of time over those that can afford to wait. Tasks
+ * with the same deadline run in the order they were submitted.
+ *
+ * Tasks without a deadline run after all tasks with one, which means that they can
+ * be starved under sustained load; clients should always set deadlines anyway.
+ *
+ * Use with the server via DeadlineAdmissionServerInterceptor#callExecutor, which
+ * supplies each call's deadline.
+ */
+public class EarliestDeadlineFirstExecutor implements Executor {
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public EarliestDeadlineFirstExecutor(int threads) {
+        // The queue is unbounded, so the pool never grows past the core size.
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, NO_DEADLINE);
+    }
+
+    /**
+     * @param deadlineNanos deadline in System#nanoTime terms, or NO_DEADLINE
+     */
+    public void execute(Runnable task, long deadlineNanos) {
+        // Note that we can't use submit(), which wraps tasks in (non-comparable) futures.
+        executor.execute(new DeadlineTask(task, deadlineNanos, sequence.getAndIncrement()));
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private static final class DeadlineTask implements Runnable, Comparable<DeadlineTask> {
+
+        private final Runnable task;
+
+        private final long deadlineNanos;
+
+        private final long sequence;
+
+        private DeadlineTask(Runnable task, long deadlineNanos, long sequence) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(DeadlineTask other) {
+            if (deadlineNanos != other.deadlineNanos) {
+                // NO_DEADLINE is the largest value, so it always goes last. Otherwise,
+                // nanoTime values must be compared by their difference.
+                if (deadlineNanos == NO_DEADLINE) {
+                    return 1;
+                }
+                if (other.deadlineNanos == NO_DEADLINE) {
+                    return -1;
+                }
+                return Long.signum(deadlineNanos - other.deadlineNanos);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package playground.protobuf;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Converts between lists of protocol buffer messages and JSON arrays without
+ * building the entire document in memory. Writing streams the messages one by
+ * one straight to the output; reading parses the array incrementally and
+ * yields one message at a time. Compare with the approach in
+ * ProtoListToJsonArrayTest, which keeps several full copies of the data.
+ *
+ * JsonFormat doesn't have a streaming API, so we use Gson (which protobuf-java-util
+ * depends on) to find the array elements, and JsonFormat to convert each of them.
+ *
+ * Instances are thread-safe and should be reused.
+ */
+public class JsonArrayCodec<T extends Message> {
+
+    private final T prototype;
+
+    private final JsonFormat.Printer printer;
+
+    private final JsonFormat.Parser parser;
+
+    public JsonArrayCodec(T prototype) {
+        this(prototype, JsonFormat.printer().omittingInsignificantWhitespace(), JsonFormat.parser());
+    }
+
+    public JsonArrayCodec(T prototype, JsonFormat.Printer printer, JsonFormat.Parser parser) {
+        this.prototype = prototype;
+        this.printer = printer;
+        this.parser = parser;
+    }
+
+    public void write(Iterable<? extends MessageOrBuilder> messages, Writer writer) throws IOException {
+        write(messages.iterator(), writer);
+    }
+
+    public void write(Stream<? extends MessageOrBuilder> messages, Writer writer) throws IOException {
+        write(messages.iterator(), writer);
+    }
+
+    public void write(Iterator<? extends MessageOrBuilder> messages, Writer writer) throws IOException {
+        writer.write('[');
+
+        boolean first = true;
+        while (messages.hasNext()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            printer.appendTo(messages.next(), writer);
+        }
+
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * Writes the messages as UTF-8 to the supplied stream. The stream is flushed, but not closed.
+     */
+    public void write(Iterator<? extends MessageOrBuilder> messages, OutputStream out) throws IOException {
+        write(messages, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    public void write(Iterable<? extends MessageOrBuilder> messages, OutputStream out) throws IOException {
+        write(messages.iterator(), out);
+    }
+
+    public void write(Stream<? extends MessageOrBuilder> messages, OutputStream out) throws IOException {
+        write(messages.iterator(), out);
+    }
+
+    /**
+     * Returns an iterator that parses messages from the supplied JSON array as they're
+     * requested. I/O errors are rethrown as UncheckedIOException; invalid messages
+     * as UncheckedIOException with an InvalidProtocolBufferException cause.
+     */
+    public ArrayIterator read(Reader reader) throws IOException {
+        return new ArrayIterator(reader);
+    }
+
+    public ArrayIterator read(InputStream in) throws IOException {
+        return read(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same as read(), but as a sequential stream. Closing the stream closes the reader.
+     */
+    public Stream<T> stream(Reader reader) throws IOException {
+        ArrayIterator iterator = read(reader);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    public class ArrayIterator implements Iterator<T>, Closeable {
+
+        private final JsonReader jsonReader;
+
+        private ArrayIterator(Reader reader) throws IOException {
+            this.jsonReader = new JsonReader(reader);
+            this.jsonReader.beginArray();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return jsonReader.peek() != JsonToken.END_ARRAY;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                // Only one element is in memory at any one time.
+                JsonElement element = JsonParser.parseReader(jsonReader);
+                Message.Builder builder = prototype.newBuilderForType();
+                parser.merge(element.toString(), builder);
+                return (T) builder.build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            jsonReader.close();
+        }
+    }
+}
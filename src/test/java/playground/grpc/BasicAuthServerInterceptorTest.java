@@ -0,0 +1,91 @@
+package playground.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BasicAuthServerInterceptorTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private ManagedChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        CredentialVerifier verifier = CredentialVerifier.of("user", "pass:word");
+        BasicAuthServerInterceptor interceptor = new BasicAuthServerInterceptor((username, password) -> {
+            verifications.incrementAndGet();
+            return verifier.verify(username, password);
+        }, 100, Duration.ofMinutes(1));
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(
+                        ServerInterceptors.intercept(new HelloServerImpl(), interceptor))
+                .build().start());
+
+        channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    }
+
+    private HelloResponse sayHello(String username, String password) {
+        return HelloGrpc.newBlockingStub(channel)
+                .withCallCredentials(new BasicAuthCallCredentials(username, password))
+                .sayHello(HelloRequest.newBuilder()
+                        .setName("Ivan")
+                        .build());
+    }
+
+    @Test
+    public void testVerifiedOncePerCredential() {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("Hello Ivan.", sayHello("user", "pass:word").getGreeting());
+        }
+
+        Assert.assertEquals(1, verifications.get());
+    }
+
+    @Test
+    public void testInvalidPassword() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                sayHello("user", "wrong");
+                Assert.fail();
+            } catch (StatusRuntimeException e) {
+                Assert.assertEquals(Status.Code.UNAUTHENTICATED, e.getStatus().getCode());
+            }
+        }
+
+        // Failures are not cached.
+        Assert.assertEquals(2, verifications.get());
+    }
+
+    @Test
+    public void testMissingHeader() {
+        try {
+            HelloGrpc.newBlockingStub(channel).sayHello(HelloRequest.newBuilder()
+                    .setName("Ivan")
+                    .build());
+            Assert.fail();
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.UNAUTHENTICATED, e.getStatus().getCode());
+        }
+
+        Assert.assertEquals(0, verifications.get());
+    }
+}
@@ -0,0 +1,153 @@
+package playground.grpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ChannelPoolTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    // Calls are held until we complete them.
+    private final List<StreamObserver<HelloResponse>> pending = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger completed = new AtomicInteger();
+
+    private String serverName;
+
+    private ChannelPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(new HelloGrpc.HelloImplBase() {
+                    @Override
+                    public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                        pending.add(responseObserver);
+                    }
+                })
+                .build().start());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private ChannelPool createPool(ChannelPool.Strategy strategy) {
+        return new ChannelPool(3, strategy,
+                () -> InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    }
+
+    private void startCalls(int count) {
+        HelloGrpc.HelloStub stub = HelloGrpc.newStub(pool);
+        for (int i = 0; i < count; i++) {
+            stub.sayHello(HelloRequest.newBuilder().setName("Ivan").build(), new StreamObserver<>() {
+                @Override
+                public void onNext(HelloResponse value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    completed.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void completeAll() {
+        for (StreamObserver<HelloResponse> observer : pending) {
+            observer.onNext(HelloResponse.getDefaultInstance());
+            observer.onCompleted();
+        }
+        pending.clear();
+    }
+
+    @Test
+    public void testRoundRobin() {
+        pool = createPool(ChannelPool.Strategy.ROUND_ROBIN);
+        startCalls(6);
+
+        Assert.assertEquals(6, pending.size());
+        for (int i = 0; i < pool.size(); i++) {
+            Assert.assertEquals(2, pool.getInFlight(i));
+        }
+
+        completeAll();
+        Assert.assertEquals(6, completed.get());
+        for (int i = 0; i < pool.size(); i++) {
+            Assert.assertEquals(0, pool.getInFlight(i));
+        }
+    }
+
+    @Test
+    public void testLeastLoaded() {
+        pool = createPool(ChannelPool.Strategy.LEAST_LOADED);
+
+        // Complete one call at a time; any channel will do.
+        for (int i = 0; i < 5; i++) {
+            startCalls(1);
+            completeAll();
+        }
+        Assert.assertEquals(5, completed.get());
+
+        // With calls held, each new call goes to the least busy channel.
+        startCalls(7);
+        int total = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            Assert.assertTrue(pool.getInFlight(i) >= 2);
+            Assert.assertTrue(pool.getInFlight(i) <= 3);
+            total += pool.getInFlight(i);
+        }
+        Assert.assertEquals(7, total);
+    }
+
+    @Test
+    public void testBlockingStub() {
+        pool = createPool(ChannelPool.Strategy.ROUND_ROBIN);
+
+        // Blocking stubs work as usual; here, the call fails because it's never completed.
+        try {
+            HelloGrpc.newBlockingStub(pool)
+                    .withDeadlineAfter(100, TimeUnit.MILLISECONDS)
+                    .sayHello(HelloRequest.newBuilder().setName("Ivan").build());
+            Assert.fail();
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+        }
+
+        Assert.assertEquals(0, pool.getInFlight(0));
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        pool = createPool(ChannelPool.Strategy.ROUND_ROBIN);
+        pool.shutdown();
+
+        Assert.assertTrue(pool.isShutdown());
+        Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(pool.isTerminated());
+    }
+}
@@ -0,0 +1,115 @@
+package playground.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HelloBatcherTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private HelloGrpc.HelloStub stub;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        HelloServerImpl service = new HelloServerImpl() {
+            @Override
+            public void batchSayHello(BatchHelloRequest request, StreamObserver<BatchHelloResponse> responseObserver) {
+                batches.incrementAndGet();
+                super.batchSayHello(request, responseObserver);
+            }
+        };
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(service)
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+        stub = HelloGrpc.newStub(channel);
+    }
+
+    private static HelloRequest request(String name) {
+        return HelloRequest.newBuilder()
+                .setName(name)
+                .build();
+    }
+
+    @Test
+    public void testFullBatches() throws Exception {
+        List<CompletableFuture<HelloResponse>> futures = new ArrayList<>();
+        try (HelloBatcher batcher = new HelloBatcher(stub, 10, Duration.ofSeconds(10), Duration.ofSeconds(5))) {
+            for (int i = 0; i < 30; i++) {
+                futures.add(batcher.sayHello(request("n" + i)));
+            }
+
+            // Three full batches were sent without waiting for the delay.
+            Assert.assertEquals(3, batches.get());
+            for (int i = 0; i < 30; i++) {
+                Assert.assertEquals("Hello n" + i + ".", futures.get(i).get(5, TimeUnit.SECONDS).getGreeting());
+            }
+        }
+    }
+
+    @Test
+    public void testMaxDelay() throws Exception {
+        try (HelloBatcher batcher = new HelloBatcher(stub, 100, Duration.ofMillis(20), Duration.ofSeconds(5))) {
+            CompletableFuture<HelloResponse> first = batcher.sayHello(request("Ivan"));
+            CompletableFuture<HelloResponse> second = batcher.sayHello(request("Ana"));
+
+            // Far from full, so they go out when the delay expires.
+            Assert.assertEquals("Hello Ivan.", first.get(5, TimeUnit.SECONDS).getGreeting());
+            Assert.assertEquals("Hello Ana.", second.get(5, TimeUnit.SECONDS).getGreeting());
+            Assert.assertEquals(1, batches.get());
+        }
+    }
+
+    @Test
+    public void testPerElementErrors() throws Exception {
+        try (HelloBatcher batcher = new HelloBatcher(stub, 2, Duration.ofSeconds(10), Duration.ofSeconds(5))) {
+            CompletableFuture<HelloResponse> valid = batcher.sayHello(request("Ivan"));
+            CompletableFuture<HelloResponse> invalid = batcher.sayHello(request(""));
+
+            Assert.assertEquals("Hello Ivan.", valid.get(5, TimeUnit.SECONDS).getGreeting());
+            try {
+                invalid.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof StatusRuntimeException);
+                Assert.assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(e.getCause()).getCode());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseFlushes() throws Exception {
+        CompletableFuture<HelloResponse> future;
+        try (HelloBatcher batcher = new HelloBatcher(stub, 100, Duration.ofSeconds(10), Duration.ofSeconds(5))) {
+            future = batcher.sayHello(request("Ivan"));
+        }
+
+        Assert.assertEquals("Hello Ivan.", future.get(5, TimeUnit.SECONDS).getGreeting());
+    }
+}
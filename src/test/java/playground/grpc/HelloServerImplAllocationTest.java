@@ -0,0 +1,89 @@
+package playground.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.metrics.ResourceAccountingServerInterceptor;
+
+/**
+ * Fails when a sayHello call allocates more than the budget, which is set via the
+ * sayHello.allocationBudget system property (see build.gradle), in bytes. The
+ * measurement covers everything that runs in the server's call callbacks: message
+ * parsing, interceptors, and the service implementation, constructed with
+ * verbose output off. The client's callbacks are not counted: the blocking stub
+ * runs them through its own executor, on the test thread, after the server's return.
+ *
+ * The budget is meant to be about twice the measured cost, which the test prints
+ * (e.g., "sayHello: calls=1000, bytes/call=..."): enough margin for differences
+ * between JVMs and gRPC versions, but small enough that a change which doubles what
+ * a call allocates fails. When the cost changes on purpose, adjust the budget. Outside
+ * Gradle, where the property isn't set, the test only prints the measurement.
+ */
+public class HelloServerImplAllocationTest {
+
+    private static final Long ALLOCATION_BUDGET = Long.getLong("sayHello.allocationBudget");
+
+    private static final int WARMUP_CALLS = 5_000;
+
+    private static final int MEASURED_CALLS = 1_000;
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final ResourceAccountingServerInterceptor interceptor = new ResourceAccountingServerInterceptor();
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(
+                        ServerInterceptors.intercept(new HelloServerImpl(false), interceptor))
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+    }
+
+    @Test
+    public void testSayHelloAllocationBudget() {
+        Assume.assumeTrue(interceptor.isAllocationSupported());
+
+        HelloRequest request = HelloRequest.newBuilder()
+                .setName("Ivan")
+                .build();
+
+        // Let the JIT compiler do its job first, because escape
+        // analysis can remove many allocations.
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            blockingStub.sayHello(request);
+        }
+
+        ResourceAccountingServerInterceptor.ResourceStats stats =
+                interceptor.getStats(HelloGrpc.getSayHelloMethod().getFullMethodName());
+        stats.reset();
+
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            blockingStub.sayHello(request);
+        }
+
+        System.out.println("sayHello: " + stats);
+
+        Assert.assertEquals(MEASURED_CALLS, stats.getCalls());
+        Assume.assumeNotNull(ALLOCATION_BUDGET);
+        Assert.assertTrue("sayHello allocated " + stats.getAllocatedBytesPerCall()
+                        + " bytes per call, over the budget of " + ALLOCATION_BUDGET,
+                stats.getAllocatedBytesPerCall() <= ALLOCATION_BUDGET);
+    }
+}
@@ -0,0 +1,249 @@
+package playground.grpc;
+
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RefreshingCallCredentialsTest {
+
+    private static final Metadata.Key<String> KEY = Metadata.Key.of("token", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Duration LIFETIME = Duration.ofMinutes(1);
+
+    private static final Duration REFRESH_AHEAD = Duration.ofSeconds(10);
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Records the outcome of applying credentials to one call.
+    private static class Applier extends CallCredentials.MetadataApplier {
+
+        private final CompletableFuture<String> token = new CompletableFuture<>();
+
+        @Override
+        public void apply(Metadata headers) {
+            token.complete(headers.get(KEY));
+        }
+
+        @Override
+        public void fail(Status status) {
+            token.completeExceptionally(status.asRuntimeException());
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    // Includes the fetches that fail.
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private volatile boolean failing;
+
+    // Tasks submitted by the credentials, which we run when we want to.
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService executor;
+
+    private final RefreshingCallCredentials credentials = new RefreshingCallCredentials(KEY, () -> {
+        attempts.incrementAndGet();
+        if (failing) {
+            throw new IllegalStateException("Token service unavailable");
+        }
+        return new RefreshingCallCredentials.Token("token-" + fetches.incrementAndGet(), clock.instant().plus(LIFETIME));
+    }, REFRESH_AHEAD, clock);
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Applier apply() {
+        Applier applier = new Applier();
+        // We don't use the request info.
+        credentials.applyRequestMetadata(null, tasks::add, applier);
+        return applier;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testFirstUseWaitsWithoutBlocking() throws Exception {
+        Applier applier = apply();
+
+        // We got here without a token, which means that the call didn't block.
+        Assert.assertFalse(applier.token.isDone());
+        Assert.assertEquals(0, fetches.get());
+
+        runTasks();
+        Assert.assertEquals("token-1", applier.token.getNow(null));
+
+        // The token is reused.
+        Assert.assertEquals("token-1", apply().token.getNow(null));
+        Assert.assertTrue(tasks.isEmpty());
+        Assert.assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testRefreshWithinWindowUsesCurrentToken() {
+        apply();
+        runTasks();
+
+        clock.advance(LIFETIME.minus(REFRESH_AHEAD).plusSeconds(1));
+
+        // Still valid, so the call doesn't wait, but a refresh starts.
+        Assert.assertEquals("token-1", apply().token.getNow(null));
+        Assert.assertEquals(1, tasks.size());
+
+        // Calls before the refresh completes share it.
+        Assert.assertEquals("token-1", apply().token.getNow(null));
+        Assert.assertEquals(1, tasks.size());
+
+        runTasks();
+        Assert.assertEquals("token-2", apply().token.getNow(null));
+        Assert.assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void testFailedRefreshBacksOff() {
+        apply();
+        runTasks();
+
+        failing = true;
+        clock.advance(LIFETIME.minus(REFRESH_AHEAD).plusSeconds(1));
+
+        // The first call in the window starts a refresh, which fails.
+        Assert.assertEquals("token-1", apply().token.getNow(null));
+        runTasks();
+        Assert.assertEquals(2, attempts.get());
+
+        // Calls in the backoff period still use the current token, and don't fetch.
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("token-1", apply().token.getNow(null));
+            runTasks();
+        }
+        Assert.assertEquals(2, attempts.get());
+
+        // After it, the next call tries again.
+        clock.advance(RefreshingCallCredentials.REFRESH_FAILURE_BACKOFF);
+        failing = false;
+        Assert.assertEquals("token-1", apply().token.getNow(null));
+        runTasks();
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals("token-2", apply().token.getNow(null));
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneFetch() throws Exception {
+        int calls = 16;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrentFetches = new AtomicInteger();
+        RefreshingCallCredentials slowCredentials = new RefreshingCallCredentials(KEY, () -> {
+            concurrentFetches.incrementAndGet();
+            release.await();
+            return new RefreshingCallCredentials.Token("slow", clock.instant().plus(LIFETIME));
+        }, REFRESH_AHEAD, clock);
+
+        executor = Executors.newCachedThreadPool();
+        CyclicBarrier barrier = new CyclicBarrier(calls);
+        List<CompletableFuture<Applier>> appliers = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            appliers.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                Applier applier = new Applier();
+                slowCredentials.applyRequestMetadata(null, executor, applier);
+                return applier;
+            }, executor));
+        }
+
+        // All the calls return straight away, even though the fetch is blocked.
+        List<Applier> started = new ArrayList<>();
+        for (CompletableFuture<Applier> applier : appliers) {
+            started.add(applier.get(5, TimeUnit.SECONDS));
+        }
+
+        release.countDown();
+        for (Applier applier : started) {
+            Assert.assertEquals("slow", applier.token.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, concurrentFetches.get());
+    }
+
+    @Test
+    public void testFailedFetchAfterExpiry() throws Exception {
+        apply();
+        runTasks();
+
+        failing = true;
+        clock.advance(LIFETIME);
+
+        Applier applier = apply();
+        runTasks();
+
+        try {
+            applier.token.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals(Status.Code.UNAUTHENTICATED, Status.fromThrowable(e.getCause()).getCode());
+        }
+
+        // The next call tries again.
+        failing = false;
+        applier = apply();
+        runTasks();
+        Assert.assertEquals("token-2", applier.token.getNow(null));
+    }
+}
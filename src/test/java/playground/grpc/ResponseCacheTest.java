@@ -0,0 +1,111 @@
+package playground.grpc;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.ManagedChannel;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private final ResponseCache cache = new ResponseCache(1024 * 1024,
+            Set.of(HelloGrpc.getSayHelloMethod().getFullMethodName()),
+            request -> !name(request).equals("Uncached"));
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        HelloServerImpl service = new HelloServerImpl() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                invocations.incrementAndGet();
+                super.sayHello(request, responseObserver);
+            }
+        };
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(
+                        cache.wrap(service.bindService()))
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+    }
+
+    private static String name(byte[] request) {
+        try {
+            return HelloRequest.parseFrom(request).getName();
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private HelloResponse sayHello(String name) {
+        return blockingStub.sayHello(HelloRequest.newBuilder()
+                .setName(name)
+                .build());
+    }
+
+    @Test
+    public void testHit() {
+        Assert.assertEquals("Hello Ivan.", sayHello("Ivan").getGreeting());
+        Assert.assertEquals("Hello Ivan.", sayHello("Ivan").getGreeting());
+        Assert.assertEquals("Hello Ivan.", sayHello("Ivan").getGreeting());
+
+        Assert.assertEquals(1, invocations.get());
+        Assert.assertEquals(2, cache.getStats().hitCount());
+        Assert.assertEquals(1, cache.getStats().missCount());
+    }
+
+    @Test
+    public void testDifferentRequests() {
+        Assert.assertEquals("Hello Ivan.", sayHello("Ivan").getGreeting());
+        Assert.assertEquals("Hello Ana.", sayHello("Ana").getGreeting());
+
+        Assert.assertEquals(2, invocations.get());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testErrorsNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                sayHello("");
+                Assert.fail();
+            } catch (StatusRuntimeException e) {
+                // Expected.
+            }
+        }
+
+        Assert.assertEquals(2, invocations.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExcludedRequestsNotCached() {
+        Assert.assertEquals("Hello Uncached.", sayHello("Uncached").getGreeting());
+        Assert.assertEquals("Hello Uncached.", sayHello("Uncached").getGreeting());
+
+        Assert.assertEquals(2, invocations.get());
+        Assert.assertEquals(0, cache.size());
+    }
+}
@@ -1,14 +1,29 @@
 package playground.grpc;
 
+import com.google.rpc.BadRequest;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
 // Adapted from
 // https://github.com/grpc/grpc-java/blob/master/examples/src/test/java/io/grpc/examples/helloworld/HelloWorldClientTest.java
 
@@ -39,6 +54,12 @@ public class ServerTest {
         blockingStub = HelloGrpc.newBlockingStub(channel);
     }
 
+    private static HelloRequest request(String name) {
+        return HelloRequest.newBuilder()
+                .setName(name)
+                .build();
+    }
+
     @Test
     public void test() {
         HelloResponse response = blockingStub.sayHello(
@@ -47,4 +68,139 @@ public class ServerTest {
                         .build());
         Assert.assertEquals("Hello Ivan.", response.getGreeting());
     }
+
+    @Test
+    public void testSlowCancelledByDeadline() throws Exception {
+        // Our own server, so that we can see what happens on its threads.
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        ThreadPoolExecutor serverExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+
+        try {
+            String serverName = InProcessServerBuilder.generateName();
+            grpcCleanup.register(InProcessServerBuilder
+                    .forName(serverName).executor(serverExecutor).addService(
+                            new HelloServerImpl(scheduler))
+                    .build().start());
+            ManagedChannel slowChannel = grpcCleanup.register(
+                    InProcessChannelBuilder.forName(serverName).build());
+
+            CompletableFuture<HelloResponse> response = new CompletableFuture<>();
+            HelloGrpc.newStub(slowChannel)
+                    .withDeadlineAfter(1, TimeUnit.SECONDS)
+                    .sayHello(request("Slow"), new StreamObserver<>() {
+                        @Override
+                        public void onNext(HelloResponse value) {
+                            response.complete(value);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            response.completeExceptionally(t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                        }
+                    });
+
+            // The service method returns straight away, leaving only the scheduled task.
+            awaitCondition(() -> scheduler.getQueue().size() == 1 && serverExecutor.getActiveCount() == 0);
+            Assert.assertFalse(response.isDone());
+            ScheduledFuture<?> work = (ScheduledFuture<?>) scheduler.getQueue().peek();
+
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e.getCause()).getCode());
+            }
+
+            // The server sees the cancellation shortly after the client does.
+            awaitCondition(() -> scheduler.getQueue().isEmpty());
+            Assert.assertTrue(work.isCancelled());
+        } finally {
+            scheduler.shutdownNow();
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                Assert.fail("Timed out waiting for condition");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        BatchHelloResponse response = blockingStub.batchSayHello(BatchHelloRequest.newBuilder()
+                .addRequests(request("Ivan"))
+                .addRequests(request(""))
+                .addRequests(request("Ana"))
+                .build());
+
+        Assert.assertEquals(3, response.getResultsCount());
+        Assert.assertEquals("Hello Ivan.", response.getResults(0).getResponse().getGreeting());
+        Assert.assertEquals("Hello Ana.", response.getResults(2).getResponse().getGreeting());
+
+        // Errors are reported per element, with the same details as SayHello.
+        com.google.rpc.Status error = response.getResults(1).getError();
+        Assert.assertEquals(Status.Code.INVALID_ARGUMENT.value(), error.getCode());
+        BadRequest badRequest = error.getDetails(0).unpack(BadRequest.class);
+        Assert.assertEquals("name", badRequest.getFieldViolations(0).getField());
+    }
+
+    @Test
+    public void testLargeBatchKeepsOrder() {
+        BatchHelloRequest.Builder request = BatchHelloRequest.newBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            request.addRequests(request("n" + i));
+        }
+
+        BatchHelloResponse response = blockingStub.batchSayHello(request.build());
+
+        Assert.assertEquals(10_000, response.getResultsCount());
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertEquals("Hello n" + i + ".", response.getResults(i).getResponse().getGreeting());
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        List<HelloResult> results = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        StreamObserver<HelloRequest> requests = HelloGrpc.newStub(channel).sayHelloStream(new StreamObserver<>() {
+            @Override
+            public void onNext(HelloResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(null);
+            }
+        });
+
+        // Invalid requests don't end the stream.
+        requests.onNext(request("Ivan"));
+        requests.onNext(request(""));
+        requests.onNext(request("Ana"));
+        requests.onCompleted();
+
+        done.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("Hello Ivan.", results.get(0).getResponse().getGreeting());
+        Assert.assertTrue(results.get(1).hasError());
+        Assert.assertEquals("Hello Ana.", results.get(2).getResponse().getGreeting());
+    }
 }
@@ -0,0 +1,207 @@
+package playground.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServiceConfigBuilderTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private static final long STALL_MILLIS = 500;
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private HelloGrpc.HelloBlockingStub createStub(HelloGrpc.HelloImplBase service, Map<String, ?> serviceConfig) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(service)
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder
+                .forName(serverName).directExecutor()
+                .defaultServiceConfig(serviceConfig)
+                .enableRetry()
+                .build());
+
+        return HelloGrpc.newBlockingStub(channel)
+                .withDeadlineAfter(5, TimeUnit.SECONDS);
+    }
+
+    private static HelloRequest request() {
+        return HelloRequest.newBuilder()
+                .setName("Ivan")
+                .build();
+    }
+
+    private static void respond(StreamObserver<HelloResponse> responseObserver) {
+        responseObserver.onNext(HelloResponse.newBuilder()
+                .setGreeting("Hello Ivan.")
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        HelloGrpc.HelloBlockingStub stub = createStub(new HelloGrpc.HelloImplBase() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                if (attempts.incrementAndGet() < 3) {
+                    responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                } else {
+                    respond(responseObserver);
+                }
+            }
+        }, new ServiceConfigBuilder()
+                .retry(HelloGrpc.getSayHelloMethod(), 3, Duration.ofMillis(1), Duration.ofMillis(10), 2,
+                        List.of(Status.Code.UNAVAILABLE))
+                .build());
+
+        Assert.assertEquals("Hello Ivan.", stub.sayHello(request()).getGreeting());
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testNonRetryableStatus() throws Exception {
+        HelloGrpc.HelloBlockingStub stub = createStub(new HelloGrpc.HelloImplBase() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                attempts.incrementAndGet();
+                responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+            }
+        }, new ServiceConfigBuilder()
+                .retry(HelloGrpc.getSayHelloMethod(), 3, Duration.ofMillis(1), Duration.ofMillis(10), 2,
+                        List.of(Status.Code.UNAVAILABLE))
+                .build());
+
+        try {
+            stub.sayHello(request());
+            Assert.fail();
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+        }
+
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testHedging() throws Exception {
+        // The first attempt never responds; only the hedged one does.
+        HelloGrpc.HelloBlockingStub stub = createStub(new HelloGrpc.HelloImplBase() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                if (attempts.incrementAndGet() > 1) {
+                    respond(responseObserver);
+                }
+            }
+        }, new ServiceConfigBuilder()
+                .hedge(HelloGrpc.getSayHelloMethod(), 2, Duration.ofMillis(50), List.of())
+                .throttle(10, 0.1)
+                .build());
+
+        long start = System.nanoTime();
+        Assert.assertEquals("Hello Ivan.", stub.sayHello(request()).getGreeting());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertEquals(2, attempts.get());
+    }
+
+    // Latencies, in milliseconds, of sequential calls to a server on which every tenth
+    // attempt stalls. The stall doesn't hold a thread, so a hedged attempt can overtake it.
+    private long[] stallingLatencies(Map<String, ?> serviceConfig) throws Exception {
+        attempts.set(0);
+        HelloGrpc.HelloBlockingStub stub = createStub(new HelloGrpc.HelloImplBase() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                if (attempts.incrementAndGet() % 10 == 0) {
+                    scheduler.schedule(() -> respond(responseObserver), STALL_MILLIS, TimeUnit.MILLISECONDS);
+                } else {
+                    respond(responseObserver);
+                }
+            }
+        }, serviceConfig);
+
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            long start = System.nanoTime();
+            stub.sayHello(request());
+            latencies[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    @Test
+    public void testHedgingCutsTailLatency() throws Exception {
+        long[] plain = stallingLatencies(new ServiceConfigBuilder().build());
+        long[] hedged = stallingLatencies(new ServiceConfigBuilder()
+                .hedge(HelloGrpc.getSayHelloMethod(), 2, Duration.ofMillis(20), List.of())
+                .throttle(10, 0.1)
+                .build());
+
+        // p99 of 100 calls is the second-slowest.
+        System.out.println("Without hedging: p50=" + plain[49] + " ms, p99=" + plain[98] + " ms, max=" + plain[99] + " ms");
+        System.out.println("With hedging:    p50=" + hedged[49] + " ms, p99=" + hedged[98] + " ms, max=" + hedged[99] + " ms");
+
+        // A tenth of the plain calls wait for the whole stall; the hedged ones wait
+        // for the hedging delay instead.
+        Assert.assertTrue(plain[98] >= STALL_MILLIS);
+        Assert.assertTrue(hedged[99] < STALL_MILLIS);
+    }
+
+    @Test
+    public void testDurationFormat() {    @Test
+    public void testDurationFormat() {
+        Assert.assertEquals("1s", ServiceConfigBuilder.duration(Duration.ofSeconds(1)));
+        Assert.assertEquals("1.5s", ServiceConfigBuilder.duration(Duration.ofMillis(1500)));
+        Assert.assertEquals("0.0001s", ServiceConfigBuilder.duration(Duration.ofNanos(100_000)));
+        Assert.assertEquals("0.000000001s", ServiceConfigBuilder.duration(Duration.ofNanos(1)));
+        Assert.assertEquals("0s", ServiceConfigBuilder.duration(Duration.ZERO));
+    }
+
+    @Test
+    public void testSubMillisecondBackoff() throws Exception {
+        HelloGrpc.HelloBlockingStub stub = createStub(new HelloGrpc.HelloImplBase() {
+            @Override
+            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                if (attempts.incrementAndGet() < 2) {
+                    responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                } else {
+                    respond(responseObserver);
+                }
+            }
+        }, new ServiceConfigBuilder()
+                .retry(HelloGrpc.getSayHelloMethod(), 2, Duration.ofNanos(100_000), Duration.ofNanos(500_000), 2,
+                        List.of(Status.Code.UNAVAILABLE))
+                .build());
+
+        // The channel rejects invalid configs, in which case there would be no retry.
+        Assert.assertEquals("Hello Ivan.", stub.sayHello(request()).getGreeting());
+        Assert.assertEquals(2, attempts.get());
+    }
+}
@@ -0,0 +1,74 @@
+package playground.grpc;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.backpressure.BackpressureStreamingServiceImpl;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+// The profiles only apply to Netty, which is why we don't use the in-process transport here.
+public class TransportProfileTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private ManagedChannel start(TransportProfile profile) throws Exception {
+        int port = grpcCleanup.register(profile.configure(
+                        NettyServerBuilder.forPort(0, InsecureServerCredentials.create()))
+                .addService(new HelloServerImpl())
+                .addService(new BackpressureStreamingServiceImpl())
+                .build().start()).getPort();
+
+        return grpcCleanup.register(profile.configure(
+                        NettyChannelBuilder.forAddress("localhost", port, InsecureChannelCredentials.create()))
+                .build());
+    }
+
+    @Test
+    public void testStreamsWithEachProfile() throws Exception {
+        for (TransportProfile profile : TransportProfile.values()) {
+            ManagedChannel channel = start(profile);
+
+            long values = 0;
+            Iterator<BatchedStreamingResponse> responses = StreamingServiceGrpc.newBlockingStub(channel)
+                    .withDeadlineAfter(30, TimeUnit.SECONDS)
+                    .batchedStreamingMethod(StreamingRequest.getDefaultInstance());
+            while (responses.hasNext()) {
+                values += responses.next().getRandomIdsCount();
+            }
+
+            Assert.assertEquals(profile.name(), 1_000_000, values);
+        }
+    }
+
+    @Test
+    public void testMaxInboundMessageSize() throws Exception {
+        TransportProfile profile = TransportProfile.LOW_LATENCY;
+        HelloGrpc.HelloBlockingStub stub = HelloGrpc.newBlockingStub(start(profile))
+                .withDeadlineAfter(5, TimeUnit.SECONDS);
+
+        HelloResponse response = stub.sayHello(HelloRequest.newBuilder()
+                .setName("Ivan")
+                .build());
+        Assert.assertEquals("Hello Ivan.", response.getGreeting());
+
+        try {
+            stub.sayHello(HelloRequest.newBuilder()
+                    .setName("x".repeat(profile.getMaxInboundMessageSize()))
+                    .build());
+            Assert.fail("Expected the server to reject the request");
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+        }
+    }
+}
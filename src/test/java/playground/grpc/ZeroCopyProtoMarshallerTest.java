@@ -0,0 +1,149 @@
+package playground.grpc;
+
+import io.grpc.Detachable;
+import io.grpc.HasByteBuffer;
+import io.grpc.KnownLength;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ZeroCopyProtoMarshallerTest {
+
+    private final ZeroCopyProtoMarshaller<HelloRequest> marshaller =
+            new ZeroCopyProtoMarshaller<>(HelloRequest.getDefaultInstance());
+
+    private final HelloRequest request = HelloRequest.newBuilder()
+            .setName("x".repeat(1000))
+            .build();
+
+    // Mimics the streams supplied by the Netty transport: the content
+    // is spread over several direct buffers, which can be detached.
+    private static class BufferStream extends InputStream implements KnownLength, HasByteBuffer, Detachable {
+
+        private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+
+        private boolean closed;
+
+        BufferStream(byte[] bytes, int chunkSize) {
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                int length = Math.min(chunkSize, bytes.length - i);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+                buffer.put(bytes, i, length).flip();
+                buffers.add(buffer);
+            }
+        }
+
+        private BufferStream(Deque<ByteBuffer> buffers) {
+            this.buffers.addAll(buffers);
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = buffers.peek();
+            if (buffer == null) {
+                return -1;
+            }
+            int b = buffer.get() & 0xff;
+            if (!buffer.hasRemaining()) {
+                buffers.poll();
+            }
+            return b;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while ((skipped < n) && !buffers.isEmpty()) {
+                ByteBuffer buffer = buffers.peek();
+                int length = (int) Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + length);
+                if (!buffer.hasRemaining()) {
+                    buffers.poll();
+                }
+                skipped += length;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffers.stream().mapToInt(ByteBuffer::remaining).sum();
+        }
+
+        @Override
+        public boolean byteBufferSupported() {
+            return true;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            ByteBuffer buffer = buffers.peek();
+            return buffer == null ? null : buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public InputStream detach() {
+            BufferStream detached = new BufferStream(buffers);
+            buffers.clear();
+            return detached;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testSingleBuffer() {
+        BufferStream stream = new BufferStream(request.toByteArray(), request.getSerializedSize());
+        Assert.assertEquals(request, marshaller.parse(stream));
+        Assert.assertEquals(0, stream.available());
+    }
+
+    @Test
+    public void testMultipleBuffers() {
+        BufferStream stream = new BufferStream(request.toByteArray(), 100);
+        Assert.assertEquals(request, marshaller.parse(stream));
+        Assert.assertEquals(0, stream.available());
+    }
+
+    @Test
+    public void testPooledBuffersAcrossThreads() throws Exception {
+        // A new thread per parse, as with virtual threads, and messages of different sizes,
+        // so that buffers are shared and reused while others are in use.
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < 64; i++) {
+            HelloRequest expected = HelloRequest.newBuilder()
+                    .setName(String.valueOf((char) ('a' + (i % 26))).repeat(1000 + i * 1000))
+                    .build();
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10; j++) {
+                    if (!expected.equals(marshaller.parse(new BufferStream(expected.toByteArray(), 100)))) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void testPlainStream() {
+        Assert.assertEquals(request, marshaller.parse(marshaller.stream(request)));
+    }
+}
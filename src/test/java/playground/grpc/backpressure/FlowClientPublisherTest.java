@@ -0,0 +1,270 @@
+package playground.grpc.backpressure;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+public class FlowClientPublisherTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Messages requested from the transport, i.e., from the server.
+    private final AtomicInteger transportRequests = new AtomicInteger();
+
+    // Counted down when the server sees the end of the call, whatever the reason.
+    private final CountDownLatch serverClosed = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Streams as many messages as the client asks for, and fails after the
+    // given number of messages, if any.
+    private FlowClientPublisher<StreamingRequest, StreamingResponse> start(int failAfter) throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        StreamProducer.Source<StreamingResponse> source = new StreamProducer.Source<>() {
+            @Override
+            public StreamingResponse next() {
+                if (sent.get() == failAfter) {
+                    throw Status.FAILED_PRECONDITION.withDescription("Out of data").asRuntimeException();
+                }
+                return StreamingResponse.newBuilder().setRandomId(sent.getAndIncrement()).build();
+            }
+
+            @Override
+            public void close() {
+                serverClosed.countDown();
+            }
+        };
+
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(new StreamingServiceGrpc.StreamingServiceImplBase() {
+                    @Override
+                    public void streamingMethod(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver) {
+                        new StreamProducer<>(source, responseObserver, 10, executor);
+                    }
+                })
+                .build().start());
+
+        Channel channel = ClientInterceptors.intercept(
+                grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build()),
+                new ClientInterceptor() {
+                    @Override
+                    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+                        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                            @Override
+                            public void request(int numMessages) {
+                                transportRequests.addAndGet(numMessages);
+                                super.request(numMessages);
+                            }
+                        };
+                    }
+                });
+
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(channel)
+                .withDeadlineAfter(10, TimeUnit.SECONDS);
+        return new FlowClientPublisher<>(StreamingRequest.getDefaultInstance(), stub::streamingMethod);
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<StreamingResponse> {
+
+        private final Consumer<Flow.Subscription> onSubscribe;
+
+        private final List<Integer> ids = new CopyOnWriteArrayList<>();
+
+        // Completed with null on onComplete, and exceptionally on onError.
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private volatile Thread errorThread;
+
+        // Set if signals overlap or follow the terminal one, which they mustn't.
+        private final AtomicBoolean inSignal = new AtomicBoolean();
+
+        private volatile boolean violation;
+
+        private volatile Flow.Subscription subscription;
+
+        private RecordingSubscriber(Consumer<Flow.Subscription> onSubscribe) {
+            this.onSubscribe = onSubscribe;
+        }
+
+        private void enter() {
+            if (!inSignal.compareAndSet(false, true) || done.isDone()) {
+                violation = true;
+            }
+        }
+
+        private void exit() {
+            inSignal.set(false);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            enter();
+            this.subscription = subscription;
+            onSubscribe.accept(subscription);
+            exit();
+        }
+
+        @Override
+        public void onNext(StreamingResponse item) {
+            enter();
+            ids.add(item.getRandomId());
+            exit();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            enter();
+            errorThread = Thread.currentThread();
+            exit();
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            enter();
+            exit();
+            done.complete(null);
+        }
+
+        private Throwable awaitError() throws Exception {
+            try {
+                done.get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected the subscription to fail");
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause();
+            }
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                Assert.fail("Timed out waiting for condition");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testRequestsExactlyTheDemand() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(subscription -> subscription.request(3));
+        start(-1).subscribe(subscriber);
+
+        awaitCondition(() -> subscriber.ids.size() == 3);
+        subscriber.subscription.request(2);
+        awaitCondition(() -> subscriber.ids.size() == 5);
+
+        // Give anything extra time to arrive.
+        Thread.sleep(100);
+        Assert.assertEquals(List.of(0, 1, 2, 3, 4), subscriber.ids);
+        Assert.assertEquals(5, transportRequests.get());
+
+        subscriber.subscription.cancel();
+        Assert.assertFalse(subscriber.violation);
+    }
+
+    @Test
+    public void testCancelReachesServer() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(subscription -> subscription.request(1));
+        start(-1).subscribe(subscriber);
+
+        awaitCondition(() -> subscriber.ids.size() == 1);
+        subscriber.subscription.cancel();
+
+        Assert.assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+
+        // A cancelled subscription is not signalled again.
+        Thread.sleep(100);
+        Assert.assertFalse(subscriber.done.isDone());
+        Assert.assertFalse(subscriber.violation);
+    }
+
+    @Test
+    public void testCancelWithinOnSubscribe() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Flow.Subscription::cancel);
+        start(-1).subscribe(subscriber);
+
+        // Nothing is asked for, and a cancelled subscription is not signalled again.
+        Thread.sleep(100);
+        Assert.assertTrue(subscriber.ids.isEmpty());
+        Assert.assertFalse(subscriber.done.isDone());
+        Assert.assertEquals(0, transportRequests.get());
+    }
+
+    @Test
+    public void testServerFailureReachesSubscriber() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(subscription -> subscription.request(Long.MAX_VALUE));
+        start(2).subscribe(subscriber);
+
+        Throwable error = subscriber.awaitError();
+        Assert.assertEquals(Status.Code.FAILED_PRECONDITION, ((StatusRuntimeException) error).getStatus().getCode());
+        Assert.assertEquals(List.of(0, 1), subscriber.ids);
+        Assert.assertFalse(subscriber.violation);
+    }
+
+    @Test
+    public void testNonPositiveRequest() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(subscription -> subscription.request(1));
+        start(-1).subscribe(subscriber);
+
+        awaitCondition(() -> subscriber.ids.size() == 1);
+        subscriber.subscription.request(0);
+
+        Assert.assertTrue(subscriber.awaitError() instanceof IllegalArgumentException);
+        // Delivered by gRPC, in turn with the other signals, rather than on our thread.
+        Assert.assertNotSame(Thread.currentThread(), subscriber.errorThread);
+        Assert.assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(subscriber.violation);
+    }
+
+    @Test
+    public void testNonPositiveRequestWithinOnSubscribe() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(subscription -> subscription.request(-1));
+        start(-1).subscribe(subscriber);
+
+        Assert.assertTrue(subscriber.awaitError() instanceof IllegalArgumentException);
+        Assert.assertTrue(subscriber.ids.isEmpty());
+        Assert.assertFalse(subscriber.violation);
+    }
+}
@@ -0,0 +1,236 @@
+package playground.grpc.backpressure;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class FlowServerSubscriberTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Emits the given number of items on its own thread, as fast as demand allows,
+    // then completes, or fails if a failure is given. Records what the subscriber does.
+    private class CountingPublisher implements Flow.Publisher<StreamingResponse> {
+
+        private final int count;
+
+        private final RuntimeException failure;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        private CountingPublisher(int count, RuntimeException failure) {
+            this.count = count;
+            this.failure = failure;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super StreamingResponse> subscriber) {
+            executor.execute(() -> subscriber.onSubscribe(new Flow.Subscription() {
+
+                // Accessed only from the executor.
+                private long demand;
+
+                private int next;
+
+                private volatile boolean stopped;
+
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    // Never emits from within request, which would recurse via onNext.
+                    executor.execute(() -> {
+                        demand += n;
+                        while (!stopped && (demand > 0) && (next < count)) {
+                            demand--;
+                            subscriber.onNext(StreamingResponse.newBuilder().setRandomId(next++).build());
+                        }
+                        if (!stopped && (next == count)) {
+                            stopped = true;
+                            if (failure != null) {
+                                subscriber.onError(failure);
+                            } else {
+                                subscriber.onComplete();
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void cancel() {
+                    stopped = true;
+                    cancelled.countDown();
+                }
+            }));
+        }
+    }
+
+    private Channel start(Flow.Publisher<StreamingResponse> publisher) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(new StreamingServiceGrpc.StreamingServiceImplBase() {
+                    @Override
+                    public void streamingMethod(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver) {
+                        FlowServerSubscriber.subscribe(publisher, responseObserver);
+                    }
+                })
+                .build().start());
+
+        return grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositivePrefetch() {
+        // Rejected before the observer is used.
+        new FlowServerSubscriber<StreamingResponse>(null, 0);
+    }
+
+    @Test
+    public void testCompletes() throws Exception {
+        Iterator<StreamingResponse> responses = StreamingServiceGrpc.newBlockingStub(start(new CountingPublisher(1000, null)))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance());
+
+        List<Integer> ids = new ArrayList<>();
+        responses.forEachRemaining(response -> ids.add(response.getRandomId()));
+        Assert.assertEquals(IntStream.range(0, 1000).boxed().collect(Collectors.toList()), ids);
+    }
+
+    @Test
+    public void testPublisherFailure() throws Exception {
+        Iterator<StreamingResponse> responses = StreamingServiceGrpc.newBlockingStub(start(new CountingPublisher(25,
+                        Status.FAILED_PRECONDITION.withDescription("Out of data").asRuntimeException())))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance());
+
+        int received = 0;
+        try {
+            while (responses.hasNext()) {
+                responses.next();
+                received++;
+            }
+            Assert.fail("Expected the call to fail");
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.FAILED_PRECONDITION, e.getStatus().getCode());
+        }
+        Assert.assertEquals(25, received);
+    }
+
+    @Test
+    public void testSlowClientLimitsDemand() throws Exception {
+        CountingPublisher publisher = new CountingPublisher(Integer.MAX_VALUE, null);
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(start(publisher))
+                .withDeadlineAfter(10, TimeUnit.SECONDS);
+
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        stub.streamingMethod(StreamingRequest.getDefaultInstance(), new ClientResponseObserver<StreamingRequest, StreamingResponse>() {
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamingRequest> requestStream) {
+                // Ask for a few messages and then nothing more, as if the client stalled.
+                requestStream.disableAutoRequestWithInitialRequest(5);
+            }
+
+            @Override
+            public void onNext(StreamingResponse response) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        // The stream stops being ready once the client's demand is met, and so
+        // the first batch is all that the publisher is asked for.
+        Thread.sleep(500);
+        Assert.assertEquals(5, received.get());
+        Assert.assertEquals(FlowServerSubscriber.DEFAULT_PREFETCH, publisher.requested.get());
+        Assert.assertEquals(1, done.getCount());
+    }
+
+    @Test
+    public void testCancelReachesPublisher() throws Exception {
+        CountingPublisher publisher = new CountingPublisher(Integer.MAX_VALUE, null);
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(start(publisher));
+
+        CountDownLatch done = new CountDownLatch(1);
+        stub.streamingMethod(StreamingRequest.getDefaultInstance(), new ClientResponseObserver<StreamingRequest, StreamingResponse>() {
+
+            private ClientCallStreamObserver<StreamingRequest> requestStream;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamingRequest> requestStream) {
+                this.requestStream = requestStream;
+            }
+
+            @Override
+            public void onNext(StreamingResponse response) {
+                if (response.getRandomId() == 100) {
+                    requestStream.cancel("Enough", null);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(publisher.cancelled.await(5, TimeUnit.SECONDS));
+
+        // The publisher is no longer asked for items.
+        long requested = publisher.requested.get();
+        Thread.sleep(100);
+        Assert.assertEquals(requested, publisher.requested.get());
+    }
+}
@@ -0,0 +1,260 @@
+package playground.grpc.backpressure;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.StreamingRequest;
+import playground.grpc.StreamingResponse;
+import playground.grpc.StreamingServiceGrpc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class StreamProducerTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    // Messages supplied by the source.
+    private final AtomicInteger pulled = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static StreamingResponse response(int id) {
+        return StreamingResponse.newBuilder().setRandomId(id).build();
+    }
+
+    // A source of the given number of messages, which fails at the end if the supplier returns an exception.
+    private StreamProducer.Source<StreamingResponse> source(int count, Supplier<RuntimeException> failure) {
+        return new StreamProducer.Source<>() {
+            @Override
+            public StreamingResponse next() {
+                if (pulled.get() == count) {
+                    RuntimeException e = failure.get();
+                    if (e != null) {
+                        throw e;
+                    }
+                    return null;
+                }
+                return response(pulled.getAndIncrement());
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+    }
+
+    private StreamingServiceGrpc.StreamingServiceBlockingStub start(StreamProducer.Source<StreamingResponse> source)
+            throws Exception {
+        return StreamingServiceGrpc.newBlockingStub(start((request, responseObserver) ->
+                new StreamProducer<>(source, responseObserver, 10, executor)));
+    }
+
+    private Channel start(StreamingMethod method) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(new StreamingServiceGrpc.StreamingServiceImplBase() {
+                    @Override
+                    public void streamingMethod(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver) {
+                        method.call(request, responseObserver);
+                    }
+                })
+                .build().start());
+
+        return grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+    }
+
+    private interface StreamingMethod {
+
+        void call(StreamingRequest request, StreamObserver<StreamingResponse> responseObserver);
+    }
+
+    private static List<Integer> receive(Iterator<StreamingResponse> responses) {
+        List<Integer> ids = new ArrayList<>();
+        responses.forEachRemaining(response -> ids.add(response.getRandomId()));
+        return ids;
+    }
+
+    @Test
+    public void testCompletes() throws Exception {
+        // Many more messages than the producer may send per callback.
+        List<Integer> ids = receive(start(source(1000, () -> null))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance()));
+
+        Assert.assertEquals(IntStream.range(0, 1000).boxed().collect(Collectors.toList()), ids);
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIteratorAndSpliterator() throws Exception {
+        List<StreamingResponse> responses = IntStream.range(0, 100)
+                .mapToObj(StreamProducerTest::response)
+                .collect(Collectors.toList());
+
+        Iterator<StreamingResponse> fromIterator = StreamingServiceGrpc.newBlockingStub(
+                        start((request, responseObserver) -> StreamProducer.produce(responses.iterator(), responseObserver)))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance());
+        Assert.assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), receive(fromIterator));
+
+        Iterator<StreamingResponse> fromSpliterator = StreamingServiceGrpc.newBlockingStub(
+                        start((request, responseObserver) -> StreamProducer.produce(responses.spliterator(), responseObserver)))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance());
+        Assert.assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), receive(fromSpliterator));
+    }
+
+    @Test
+    public void testSourceFailure() throws Exception {
+        Iterator<StreamingResponse> responses = start(source(25,
+                () -> Status.FAILED_PRECONDITION.withDescription("Out of data").asRuntimeException()))
+                .withDeadlineAfter(10, TimeUnit.SECONDS)
+                .streamingMethod(StreamingRequest.getDefaultInstance());
+
+        int received = 0;
+        try {
+            while (responses.hasNext()) {
+                responses.next();
+                received++;
+            }
+            Assert.fail("Expected the call to fail");
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.FAILED_PRECONDITION, e.getStatus().getCode());
+            Assert.assertEquals("Out of data", e.getStatus().getDescription());
+        }
+
+        // The messages sent before the failure are delivered.
+        Assert.assertEquals(25, received);
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancellation() throws Exception {
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(start((request, responseObserver) ->
+                new StreamProducer<>(source(Integer.MAX_VALUE, () -> null), responseObserver, 10, executor)));
+
+        CountDownLatch done = new CountDownLatch(1);
+        stub.streamingMethod(StreamingRequest.getDefaultInstance(), new ClientResponseObserver<StreamingRequest, StreamingResponse>() {
+
+            private ClientCallStreamObserver<StreamingRequest> requestStream;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamingRequest> requestStream) {
+                this.requestStream = requestStream;
+            }
+
+            @Override
+            public void onNext(StreamingResponse response) {
+                if (response.getRandomId() == 100) {
+                    requestStream.cancel("Enough", null);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+
+        // The source is no longer pulled.
+        int count = pulled.get();
+        Thread.sleep(100);
+        Assert.assertEquals(count, pulled.get());
+    }
+
+    @Test
+    public void testLimitsMessagesPerCallback() throws Exception {
+        // Runs each task on a new thread and waits for it. This is the worst case for
+        // the hand-off: the task runs before the callback that scheduled it returns.
+        Executor eager = task -> {
+            Thread thread = new Thread(task, "producer-executor");
+            thread.start();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // Messages pulled on threads other than the executor's, i.e., in gRPC callbacks.
+        AtomicInteger pulledInCallbacks = new AtomicInteger();
+        StreamProducer.Source<StreamingResponse> source = source(1000, () -> null);
+
+        StreamingServiceGrpc.StreamingServiceStub stub = StreamingServiceGrpc.newStub(start((request, responseObserver) ->
+                new StreamProducer<>(() -> {
+                    if (!Thread.currentThread().getName().equals("producer-executor")) {
+                        pulledInCallbacks.incrementAndGet();
+                    }
+                    return source.next();
+                }, responseObserver, 10, eager)));
+
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        stub.streamingMethod(StreamingRequest.getDefaultInstance(), new ClientResponseObserver<StreamingRequest, StreamingResponse>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamingRequest> requestStream) {
+                // Ask for everything up front, so that the stream never stops being
+                // ready, and it's only the limit that stops the producer.
+                requestStream.disableAutoRequestWithInitialRequest(1000);
+            }
+
+            @Override
+            public void onNext(StreamingResponse response) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1000, received.get());
+        Assert.assertEquals(10, pulledInCallbacks.get());
+    }
+}
@@ -0,0 +1,68 @@
+package playground.grpc.compression;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.HelloGrpc;
+import playground.grpc.HelloRequest;
+import playground.grpc.HelloServerImpl;
+
+public class AdaptiveCompressionServerInterceptorTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final Compression compression = new Compression();
+
+    private final AdaptiveCompressionServerInterceptor interceptor = new AdaptiveCompressionServerInterceptor(
+            new CompressionPolicy(CompressionPolicy.Rule.DISABLED)
+                    .forMethod(HelloGrpc.getSayHelloMethod(), new CompressionPolicy.Rule(DeflateCodec.NAME, 100)));
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    @Before
+    public void setUp() throws Exception {
+        // The in-process transport doesn't compress, so we need a real one.
+        Server server = grpcCleanup.register(Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .addService(ServerInterceptors.intercept(new HelloServerImpl(), interceptor))
+                .compressorRegistry(compression.getCompressorRegistry())
+                .decompressorRegistry(Compression.decompressorRegistry())
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                Grpc.newChannelBuilderForAddress("localhost", server.getPort(), InsecureChannelCredentials.create())
+                        .decompressorRegistry(Compression.decompressorRegistry())
+                        .build());
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+    }
+
+    @Test
+    public void testThreshold() {
+        String longName = "x".repeat(1000);
+        Assert.assertEquals("Hello " + longName + ".", blockingStub.sayHello(HelloRequest.newBuilder()
+                .setName(longName)
+                .build()).getGreeting());
+
+        Assert.assertEquals("Hello Ivan.", blockingStub.sayHello(HelloRequest.newBuilder()
+                .setName("Ivan")
+                .build()).getGreeting());
+
+        AdaptiveCompressionServerInterceptor.MethodStats methodStats =
+                interceptor.getStats().get(HelloGrpc.getSayHelloMethod().getFullMethodName());
+        Assert.assertEquals(1, methodStats.getCompressed());
+        Assert.assertEquals(1, methodStats.getUncompressed());
+
+        CompressionStats stats = compression.getStats().get(DeflateCodec.NAME);
+        Assert.assertEquals(1, stats.getMessages());
+        Assert.assertTrue(stats.toString(), stats.getRatio() < 0.1);
+    }
+}
@@ -0,0 +1,152 @@
+package playground.grpc.limits;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.HelloGrpc;
+import playground.grpc.HelloRequest;
+import playground.grpc.HelloResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimitServerInterceptorTest {
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    // A fixed limit of two calls.
+    private final ConcurrencyLimitServerInterceptor interceptor = new ConcurrencyLimitServerInterceptor(
+            new GradientConcurrencyLimit(2, 2, 2), Duration.ofMillis(250));
+
+    // Calls are held until we complete them.
+    private final List<StreamObserver<HelloResponse>> pending = new CopyOnWriteArrayList<>();
+
+    private HelloGrpc.HelloStub stub;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(ServerInterceptors.intercept(
+                        new HelloGrpc.HelloImplBase() {
+                            @Override
+                            public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                                pending.add(responseObserver);
+                            }
+                        }, interceptor))
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+        stub = HelloGrpc.newStub(channel);
+    }
+
+    private static class Result implements StreamObserver<HelloResponse> {
+
+        private Status status;
+
+        private Metadata trailers;
+
+        @Override
+        public void onNext(HelloResponse value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            status = Status.fromThrowable(t);
+            trailers = Status.trailersFromThrowable(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            status = Status.OK;
+        }
+    }
+
+    private Result sayHello() {
+        Result result = new Result();
+        stub.sayHello(HelloRequest.newBuilder().setName("Ivan").build(), result);
+        return result;
+    }
+
+    private void completeAll() {
+        for (StreamObserver<HelloResponse> observer : pending) {
+            observer.onNext(HelloResponse.getDefaultInstance());
+            observer.onCompleted();
+        }
+        pending.clear();
+    }
+
+    @Test
+    public void testRejectOverLimit() {
+        Result first = sayHello();
+        Result second = sayHello();
+        Result third = sayHello();
+
+        Assert.assertEquals(2, interceptor.getInFlight());
+        Assert.assertEquals(Status.Code.RESOURCE_EXHAUSTED, third.status.getCode());
+        Assert.assertEquals("250", third.trailers.get(ConcurrencyLimitServerInterceptor.RETRY_PUSHBACK_KEY));
+        Assert.assertEquals(1, interceptor.getRejected());
+
+        completeAll();
+        Assert.assertEquals(Status.OK, first.status);
+        Assert.assertEquals(Status.OK, second.status);
+        Assert.assertEquals(0, interceptor.getInFlight());
+
+        // There's room again.
+        sayHello();
+        Assert.assertEquals(1, interceptor.getInFlight());
+    }
+
+    @Test
+    public void testCancelledCallsReleased() {
+        HelloGrpc.HelloStub shortDeadline = stub.withDeadlineAfter(10, TimeUnit.MILLISECONDS);
+        Result result = new Result();
+        shortDeadline.sayHello(HelloRequest.newBuilder().setName("Ivan").build(), result);
+        Assert.assertEquals(1, interceptor.getInFlight());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((interceptor.getInFlight() > 0) && (System.nanoTime() < deadline)) {
+            Thread.onSpinWait();
+        }
+
+        Assert.assertEquals(0, interceptor.getInFlight());
+    }
+
+    @Test
+    public void testLimitAdapts() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 1, 100);
+
+        // Steady latency with the limit in use: the limit grows.
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit());
+        }
+        int grown = limit.getLimit();
+        Assert.assertTrue(grown > 20);
+
+        // Latency goes up tenfold: the limit shrinks.
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(100), limit.getLimit());
+        }
+        Assert.assertTrue(limit.getLimit() < grown);
+
+        // Little use of the limit: no change.
+        int current = limit.getLimit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 0);
+        Assert.assertEquals(current, limit.getLimit());
+    }
+}
@@ -0,0 +1,224 @@
+package playground.grpc.loadbalancing;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.NameResolverRegistry;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.inprocess.InProcessSocketAddress;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.HelloGrpc;
+import playground.grpc.HelloRequest;
+import playground.grpc.HelloResponse;
+import playground.grpc.HelloServerImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadBalancingTest {
+
+    private static final String SCHEME = "inprocess-static";
+
+    private static final String FILE_SCHEME = "inprocess-file";
+
+    private static final int SERVERS = 3;
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final String[] serverNames = new String[SERVERS];
+
+    private final AtomicInteger[] calls = new AtomicInteger[SERVERS];
+
+    @BeforeClass
+    public static void registerResolvers() {
+        NameResolverRegistry.getDefaultRegistry().register(
+                new StaticNameResolverProvider(SCHEME, InProcessSocketAddress::new, InProcessSocketAddress.class));
+        NameResolverRegistry.getDefaultRegistry().register(
+                new FileNameResolverProvider(FILE_SCHEME, InProcessSocketAddress::new, InProcessSocketAddress.class,
+                        Duration.ofMillis(10)));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < SERVERS; i++) {
+            AtomicInteger counter = new AtomicInteger();
+            calls[i] = counter;
+            serverNames[i] = InProcessServerBuilder.generateName();
+            grpcCleanup.register(InProcessServerBuilder
+                    .forName(serverNames[i]).directExecutor().addService(new HelloServerImpl() {
+                        @Override
+                        public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                            counter.incrementAndGet();
+                            super.sayHello(request, responseObserver);
+                        }
+                    })
+                    .build().start());
+        }
+    }
+
+    private ManagedChannel createChannel(String target, String policy) {
+        return grpcCleanup.register(InProcessChannelBuilder
+                .forTarget(target)
+                .defaultLoadBalancingPolicy(policy)
+                .directExecutor()
+                .build());
+    }
+
+    private HelloGrpc.HelloBlockingStub createStub(String policy) {
+        return HelloGrpc.newBlockingStub(createChannel(SCHEME + ":///" + String.join(",", serverNames), policy))
+                .withDeadlineAfter(5, TimeUnit.SECONDS);
+    }
+
+    private static void sayHello(HelloGrpc.HelloBlockingStub stub) {
+        sayHello(stub, "Ivan");
+    }
+
+    private static void sayHello(HelloGrpc.HelloBlockingStub stub, String name) {
+        stub.sayHello(HelloRequest.newBuilder()
+                .setName(name)
+                .build());
+    }
+
+    // Makes calls until every server has seen one, which means that all
+    // subchannels are connected, and then resets the counters.
+    private void warmUp(HelloGrpc.HelloBlockingStub stub) {
+        for (int i = 0; (i < 1000) && Arrays.stream(calls).anyMatch(c -> c.get() == 0); i++) {
+            sayHello(stub, "warmup");
+        }
+        for (AtomicInteger counter : calls) {
+            Assert.assertTrue(counter.get() > 0);
+            counter.set(0);
+        }
+    }
+
+    @Test
+    public void testPlainTargetUsesDns() {
+        // Our resolvers are registered for the whole process, but mustn't
+        // take over targets without a scheme.
+        Assert.assertEquals("dns", NameResolverRegistry.getDefaultRegistry().getDefaultScheme());
+
+        // The channel doesn't resolve or connect until the first call.
+        ManagedChannel channel = grpcCleanup.register(Grpc.newChannelBuilder("example.com:443",
+                InsecureChannelCredentials.create()).build());
+        Assert.assertEquals("example.com:443", channel.authority());
+    }
+
+    @Test
+    public void testPickFirst() {
+        HelloGrpc.HelloBlockingStub stub = createStub("pick_first");
+        for (int i = 0; i < 30; i++) {
+            sayHello(stub);
+        }
+
+        Assert.assertEquals(30, calls[0].get());
+        Assert.assertEquals(0, calls[1].get());
+        Assert.assertEquals(0, calls[2].get());
+    }
+
+    @Test
+    public void testRoundRobin() {
+        HelloGrpc.HelloBlockingStub stub = createStub("round_robin");
+        warmUp(stub);
+
+        for (int i = 0; i < 30; i++) {
+            sayHello(stub);
+        }
+
+        for (AtomicInteger counter : calls) {
+            Assert.assertEquals(10, counter.get());
+        }
+    }
+
+    @Test
+    public void testLeastOutstandingRequests() throws Exception {
+        // Replace the first server with one that never responds, other than to warm-up calls.
+        List<StreamObserver<HelloResponse>> stuck = new ArrayList<>();
+        serverNames[0] = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverNames[0]).directExecutor().addService(new HelloGrpc.HelloImplBase() {
+                    @Override
+                    public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                        calls[0].incrementAndGet();
+                        if (request.getName().equals("warmup")) {
+                            responseObserver.onNext(HelloResponse.getDefaultInstance());
+                            responseObserver.onCompleted();
+                        } else {
+                            stuck.add(responseObserver);
+                        }
+                    }
+                })
+                .build().start());
+
+        ManagedChannel channel = createChannel(SCHEME + ":///" + String.join(",", serverNames),
+                LeastOutstandingRequestsLoadBalancer.POLICY_NAME);
+        warmUp(HelloGrpc.newBlockingStub(channel).withDeadlineAfter(5, TimeUnit.SECONDS));
+
+        HelloGrpc.HelloStub stub = HelloGrpc.newStub(channel)
+                .withDeadlineAfter(5, TimeUnit.SECONDS);
+
+        // Once a call is stuck on the first server, all others go elsewhere.
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 30; i++) {
+            stub.sayHello(HelloRequest.newBuilder().setName("Ivan").build(), new StreamObserver<>() {
+                @Override
+                public void onNext(HelloResponse value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    completed.incrementAndGet();
+                }
+            });
+        }
+
+        Assert.assertTrue(calls[0].get() <= 1);
+        Assert.assertEquals(calls[0].get(), stuck.size());
+        Assert.assertEquals(30 - calls[0].get(), completed.get());
+        Assert.assertEquals(30 - calls[0].get(), calls[1].get() + calls[2].get());
+    }
+
+    @Test
+    public void testFileResolver() throws Exception {
+        Path file = Files.createTempFile("backends", ".txt");
+        try {
+            Files.writeString(file, "# Backends\n" + serverNames[1] + "\n");
+
+            ManagedChannel channel = createChannel(FILE_SCHEME + "://" + file.toAbsolutePath(), "round_robin");
+            HelloGrpc.HelloBlockingStub stub = HelloGrpc.newBlockingStub(channel)
+                    .withDeadlineAfter(5, TimeUnit.SECONDS);
+
+            sayHello(stub);
+            Assert.assertEquals(1, calls[1].get());
+
+            // Switch to another backend; the change is picked up by the next poll.
+            Files.writeString(file, serverNames[2] + "\n");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((calls[2].get() == 0) && (System.nanoTime() < deadline)) {
+                sayHello(stub);
+                Thread.sleep(10);
+            }
+
+            Assert.assertTrue(calls[2].get() > 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package playground.grpc.metrics;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.HelloGrpc;
+import playground.grpc.HelloRequest;
+import playground.grpc.HelloResponse;
+
+public class ResourceAccountingServerInterceptorTest {
+
+    private static final int ALLOCATION_PER_CALL = 1024 * 1024;
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final ResourceAccountingServerInterceptor interceptor = new ResourceAccountingServerInterceptor();
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    // Allocates a known amount of memory on every call.
+    private static class AllocatingHelloImpl extends HelloGrpc.HelloImplBase {
+
+        private volatile byte[] sink;
+
+        @Override
+        public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+            sink = new byte[ALLOCATION_PER_CALL];
+            responseObserver.onNext(HelloResponse.newBuilder()
+                    .setGreeting("Hello " + sink.length)
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName).directExecutor().addService(
+                        ServerInterceptors.intercept(new AllocatingHelloImpl(), interceptor))
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+    }
+
+    @Test
+    public void testAllocationIsAttributedToMethod() {
+        Assume.assumeTrue(interceptor.isAllocationSupported());
+
+        for (int i = 0; i < 10; i++) {
+            blockingStub.sayHello(HelloRequest.newBuilder()
+                    .setName("Ivan")
+                    .build());
+        }
+
+        ResourceAccountingServerInterceptor.ResourceStats stats =
+                interceptor.getStats(HelloGrpc.getSayHelloMethod().getFullMethodName());
+
+        Assert.assertEquals(10, stats.getCalls());
+        Assert.assertTrue(stats.toString(), stats.getAllocatedBytesPerCall() >= ALLOCATION_PER_CALL);
+        // Generous upper bound; the rest is gRPC and protobuf overhead.
+        Assert.assertTrue(stats.toString(), stats.getAllocatedBytesPerCall() < 2 * ALLOCATION_PER_CALL);
+    }
+}
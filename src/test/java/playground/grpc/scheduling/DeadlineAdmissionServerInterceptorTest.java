@@ -0,0 +1,141 @@
+package playground.grpc.scheduling;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import playground.grpc.HelloGrpc;
+import playground.grpc.HelloRequest;
+import playground.grpc.HelloResponse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DeadlineAdmissionServerInterceptorTest {
+
+    private static final String METHOD = HelloGrpc.getSayHelloMethod().getFullMethodName();
+
+    @Rule
+    public GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+    private final DeadlineAdmissionServerInterceptor admission = new DeadlineAdmissionServerInterceptor();
+
+    private final EarliestDeadlineFirstExecutor executor = new EarliestDeadlineFirstExecutor(1);
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private HelloGrpc.HelloBlockingStub blockingStub;
+
+    @Before
+    public void setUp() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+
+        // Each call takes about 50 ms.
+        grpcCleanup.register(InProcessServerBuilder
+                .forName(serverName)
+                .callExecutor(admission.callExecutor(executor))
+                .addService(ServerInterceptors.intercept(new HelloGrpc.HelloImplBase() {
+                    @Override
+                    public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                        invocations.incrementAndGet();
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        responseObserver.onNext(HelloResponse.getDefaultInstance());
+                        responseObserver.onCompleted();
+                    }
+                }, admission))
+                .build().start());
+
+        ManagedChannel channel = grpcCleanup.register(
+                InProcessChannelBuilder.forName(serverName).build());
+
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private void sayHello(long deadlineMillis) {
+        blockingStub.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .sayHello(HelloRequest.newBuilder().setName("Ivan").build());
+    }
+
+    @Test
+    public void testRejectWhenDeadlineTooShort() {
+        for (int i = 0; i < 5; i++) {
+            sayHello(5_000);
+        }
+
+        DeadlineAdmissionServerInterceptor.MethodStats stats = admission.getStats(METHOD);
+        Assert.assertEquals(5, stats.getAdmitted());
+        Assert.assertTrue(stats.getServiceNanosEstimate() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        // There's no point in starting a 50 ms call with 20 ms left.
+        try {
+            sayHello(20);
+            Assert.fail();
+        } catch (StatusRuntimeException e) {
+            Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+        }
+
+        Assert.assertEquals(5, invocations.get());
+        Assert.assertEquals(1, stats.getRejected());
+    }
+
+    @Test
+    public void testQueueTimeRecorded() {
+        sayHello(5_000);
+
+        DeadlineAdmissionServerInterceptor.MethodStats stats = admission.getStats(METHOD);
+        Assert.assertTrue(stats.getAverageQueueNanos() > 0);
+    }
+
+    @Test
+    public void testEarliestDeadlineFirst() throws Exception {
+        EarliestDeadlineFirstExecutor edf = new EarliestDeadlineFirstExecutor(1);
+        try {
+            // Occupy the only thread, so that the other tasks queue up.
+            CountDownLatch blocked = new CountDownLatch(1);
+            edf.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            long now = System.nanoTime();
+            List<String> order = new CopyOnWriteArrayList<>();
+            edf.execute(() -> order.add("none"));
+            edf.execute(() -> order.add("late"), now + TimeUnit.SECONDS.toNanos(3));
+            edf.execute(() -> order.add("early"), now + TimeUnit.SECONDS.toNanos(1));
+            edf.execute(() -> order.add("middle"), now + TimeUnit.SECONDS.toNanos(2));
+            edf.execute(() -> order.add("early2"), now + TimeUnit.SECONDS.toNanos(1));
+
+            blocked.countDown();
+            edf.shutdown();
+            Assert.assertTrue(edf.awaitTermination(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(List.of("early", "early2", "middle", "late", "none"), order);
+        } finally {
+            edf.shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package playground.protobuf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class JsonArrayCodecTest {
+
+    private final JsonArrayCodec<Item> codec = new JsonArrayCodec<>(Item.getDefaultInstance());
+
+    @Test
+    public void testWrite() throws IOException {
+        List<Item> input = new ArrayList<>();
+        input.add(Item.newBuilder()
+                .setName("1")
+                .build());
+        input.add(Item.newBuilder()
+                .setName("2")
+                .build());
+
+        StringWriter writer = new StringWriter();
+        codec.write(input, writer);
+
+        Assert.assertEquals("[{\"name\":\"1\"},{\"name\":\"2\"}]", writer.toString());
+    }
+
+    @Test
+    public void testWriteEmpty() throws IOException {
+        StringWriter writer = new StringWriter();
+        codec.write(new ArrayList<Item>(), writer);
+        Assert.assertEquals("[]", writer.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(IntStream.range(0, 1000)
+                .mapToObj(i -> Item.newBuilder()
+                        .setName(Integer.toString(i))
+                        .build()), out);
+
+        List<Item> output = new ArrayList<>();
+        codec.read(new ByteArrayInputStream(out.toByteArray())).forEachRemaining(output::add);
+
+        Assert.assertEquals(1000, output.size());
+        Assert.assertEquals("999", output.get(999).getName());
+    }
+
+    @Test
+    public void testReadIncrementally() throws IOException {
+        // The second element is invalid, but we can still read the first one.
+        Iterator<Item> iterator = codec.read(new StringReader("[{\"name\": \"1\"}, {\"unknown\": 1}]"));
+
+        Assert.assertEquals("1", iterator.next().getName());
+
+        try {
+            iterator.next();
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        String json = "[{\"name\":\"a\"},{\"name\":\"b\"}]";
+        Assert.assertEquals("ab", codec.stream(new StringReader(json))
+                .map(Item::getName)
+                .collect(Collectors.joining()));
+    }
+}